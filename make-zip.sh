@@ -59,6 +59,7 @@ do_shrink src/VortexSASLEngine.js
 do_shrink src/VortexFrame.js
 do_shrink src/VortexSASLEnginePlain.js
 do_shrink src/VortexSASLEngineAnonymous.js
+do_shrink src/VortexSASLEngineJSC.js
 do_shrink src/VortexMimeHeader.js
 
 # ensure right permissions
@@ -0,0 +1,150 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * @brief Measures end to end throughput of each BridgeEncoding: a
+ * local server streams content to a ConnectorCore connection and a
+ * StubBrowser handler does the work the JS side would do for each
+ * mode (base64 decode, string literal parse or nothing).
+ *
+ * Reported for each mode: payload MB/s delivered and bridge bytes
+ * (content placed into the evaluated call) per payload byte. The JS
+ * engine cost itself is only emulated in Java.
+ *
+ * Usage: java BridgeBenchmark [-mb size] [-latin1]
+ *
+ * -latin1 streams random bytes (0-255) over an ISO-8859-1
+ * connection instead of BEEP like UTF-8 text.
+ */
+public class BridgeBenchmark implements StubBrowser.Handler {
+
+	int     megabytes = 32;
+	boolean latin1    = false;
+
+	/* current run */
+	int     mode;
+	long    delivered;
+	long    bridged;
+	boolean closed;
+
+	public synchronized Object call (String conn_id, String method, String [] args) {
+		if (method.equals ("onmessage")) {
+			String value = args[0];
+			bridged += value.length ();
+			if (mode == BridgeEncoding.BASE64)
+				value = decodeBase64 (value);
+			else if (mode == BridgeEncoding.ESCAPED)
+				value = BridgeEncoding.unescape (value);
+			delivered += value.length ();
+		} else if (method.equals ("onclose")) {
+			closed = true;
+			notifyAll ();
+		}
+		return Boolean.TRUE;
+	}
+
+	/* what VortexBase64.decode does: base64 then charset decode */
+	String decodeBase64 (String value) {
+		try {
+			return new String (Base64Coder.decode (value), latin1 ? "ISO-8859-1" : "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException (ex);
+		}
+	}
+
+	/* builds the content streamed by the server */
+	byte [] content () throws Exception {
+		byte [] block;
+		if (latin1) {
+			block = new byte [65536];
+			new Random (1).nextBytes (block);
+			return block;
+		}
+		StringBuilder builder = new StringBuilder ();
+		while (builder.length () < 60000)
+			builder.append ("MSG 1 23 . 1024 320\r\nContent-Type: application/beep+xml\r\n\r\n<data user=\"se\u00f1or\">caf\u00e9 r\u00e9sum\u00e9 plain text</data>\r\nEND\r\n");
+		return builder.toString ().getBytes ("UTF-8");
+	}
+
+	void run () throws Exception {
+		final byte []      block  = content ();
+		final long         total  = (long) megabytes * 1024 * 1024;
+		final ServerSocket server = new ServerSocket (0, 50, InetAddress.getByName ("127.0.0.1"));
+
+		/* server: stream total bytes to each connection, then close */
+		Thread sender = new Thread () {
+			public void run () {
+				while (true) {
+					try {
+						Socket       socket = server.accept ();
+						OutputStream out    = socket.getOutputStream ();
+						long         sent   = 0;
+						while (sent < total) {
+							int size = (int) Math.min (block.length, total - sent);
+							out.write (block, 0, size);
+							sent += size;
+						}
+						socket.close ();
+					} catch (IOException ex) {
+						return;
+					}
+				}
+			}
+		};
+		sender.setDaemon (true);
+		sender.start ();
+
+		StubBrowser   browser = new StubBrowser (this);
+		ConnectorCore core    = new ConnectorCore (browser);
+		core.start ();
+		while (core.jsConnector == null)
+			Thread.sleep (10);
+
+		System.out.println ("BridgeBenchmark: " + megabytes + " MB of " + (latin1 ? "latin-1 binary" : "UTF-8 text") + " per mode");
+		System.out.println (String.format ("  %-8s %10s %14s", "mode", "MB/s", "bridge/byte"));
+		int [] modes = {BridgeEncoding.BASE64, BridgeEncoding.ESCAPED, BridgeEncoding.DIRECT};
+		for (int i = 0; i < modes.length; i++) {
+			String id = String.valueOf (i + 1);
+			synchronized (this) {
+				mode      = modes[i];
+				delivered = 0;
+				bridged   = 0;
+				closed    = false;
+			}
+			browser.setConnMember (id, "bridgeEncoding", BridgeEncoding.name (mode));
+			long start = System.nanoTime ();
+			core.connect ("127.0.0.1", server.getLocalPort (), latin1 ? "ISO-8859-1" : "UTF-8", id);
+			synchronized (this) {
+				while (! closed)
+					wait ();
+			}
+			double seconds = (System.nanoTime () - start) / 1e9;
+			System.out.println (String.format ("  %-8s %10.2f %14s", BridgeEncoding.name (mode), total / seconds / (1024 * 1024),
+							   mode == BridgeEncoding.DIRECT ? "-" : String.format ("%.2f", bridged / (double) total)));
+		}
+		core.stop ();
+		server.close ();
+		return;
+	}
+
+	public static void main (String [] args) throws Exception {
+		BridgeBenchmark bench = new BridgeBenchmark ();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals ("-mb")) {
+				bench.megabytes = Integer.parseInt (args[++i]);
+			} else if (args[i].equals ("-latin1")) {
+				bench.latin1 = true;
+			} else {
+				System.err.println ("Usage: java BridgeBenchmark [-mb size] [-latin1]");
+				System.exit (1);
+			}
+		}
+		bench.run ();
+		System.exit (0);
+	}
+}
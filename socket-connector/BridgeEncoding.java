@@ -0,0 +1,133 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+/**
+ * @brief Ways content read from the socket can be passed into
+ * JavaScript (onmessage), selected per connection with the
+ * bridgeEncoding member of the JS connection object:
+ *
+ * - "base64": content is base64 encoded into the evaluated call and
+ *   decoded by JavaSocketConnector.call (VortexBase64.decode).
+ * - "escaped": content is placed into the evaluated call as a JS
+ *   string literal (hex or unicode escapes for non printable chars)
+ *   so the JS engine parser builds the string, no decode loop.
+ * - "direct": the Java String is passed as is with JSObject.call
+ *   (falls back to "escaped" if the browser does not allow it).
+ */
+public class BridgeEncoding {
+	public static final int BASE64  = 0;
+	public static final int ESCAPED = 1;
+	public static final int DIRECT  = 2;
+
+	static final char [] HEX = "0123456789abcdef".toCharArray ();
+
+	/* per thread builder reused to escape content */
+	private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder> () {
+		protected StringBuilder initialValue () {
+			return new StringBuilder (16384);
+		}
+	};
+
+	/**
+	 * @brief Translates the bridgeEncoding member value.
+	 *
+	 * @return The mode (BASE64 if value is not recognized, the JS
+	 * connection object normalizes its member the same way).
+	 */
+	public static int parse (Object value) {
+		if ("escaped".equals (value))
+			return ESCAPED;
+		if ("direct".equals (value))
+			return DIRECT;
+		return BASE64;
+	}
+
+	/**
+	 * @brief Returns the name of the provided mode.
+	 */
+	public static String name (int mode) {
+		switch (mode) {
+		case ESCAPED:
+			return "escaped";
+		case DIRECT:
+			return "direct";
+		}
+		return "base64";
+	}
+
+	/**
+	 * @brief Escapes the provided value to be placed inside a
+	 * double quoted JS string literal.
+	 */
+	public static String escape (String value) {
+		StringBuilder builder = builders.get ();
+		int           size    = value.length ();
+		char          c;
+
+		builder.setLength (0);
+		for (int i = 0; i < size; i++) {
+			c = value.charAt (i);
+			if (c >= 0x20 && c < 0x7f) {
+				if (c == '"' || c == '\\')
+					builder.append ('\\');
+				builder.append (c);
+			} else if (c == '\n') {
+				builder.append ("\\n");
+			} else if (c == '\r') {
+				builder.append ("\\r");
+			} else if (c == '\t') {
+				builder.append ("\\t");
+			} else if (c <= 0xff) {
+				builder.append ("\\x").append (HEX[c >> 4]).append (HEX[c & 0xf]);
+			} else {
+				builder.append ("\\u").append (HEX[c >> 12]).append (HEX[(c >> 8) & 0xf])
+					.append (HEX[(c >> 4) & 0xf]).append (HEX[c & 0xf]);
+			}
+		}
+		/* do not keep big builders alive */
+		String result = builder.toString ();
+		if (builder.capacity () > 262144)
+			builders.remove ();
+		return result;
+	}
+
+	/**
+	 * @brief Reverts escape (used by tools emulating the JS side).
+	 */
+	public static String unescape (String value) {
+		StringBuilder builder = new StringBuilder (value.length ());
+		char          c;
+		for (int i = 0; i < value.length (); i++) {
+			c = value.charAt (i);
+			if (c != '\\') {
+				builder.append (c);
+				continue;
+			}
+			c = value.charAt (++i);
+			switch (c) {
+			case 'n':
+				builder.append ('\n');
+				break;
+			case 'r':
+				builder.append ('\r');
+				break;
+			case 't':
+				builder.append ('\t');
+				break;
+			case 'x':
+				builder.append ((char) Integer.parseInt (value.substring (i + 1, i + 3), 16));
+				i += 2;
+				break;
+			case 'u':
+				builder.append ((char) Integer.parseInt (value.substring (i + 1, i + 5), 16));
+				i += 4;
+				break;
+			default:
+				builder.append (c);
+			}
+		}
+		return builder.toString ();
+	}
+}
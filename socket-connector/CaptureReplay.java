@@ -0,0 +1,131 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * @brief Offline replay of a capture produced by TrafficCapture.
+ *
+ * The tool plays the remote peer: it listens on a local port and,
+ * once the connector connects, sends the inbound records back at
+ * their original pace (divided by the speed factor), waiting for the
+ * connector to write as many bytes as were recorded outbound before
+ * going on with the next inbound record.
+ *
+ * Usage:
+ *   java CaptureReplay capture-file [port] [speed]
+ *   java CaptureReplay -dump capture-file
+ *
+ * speed 1 is original pace, 10 is ten times faster and 0 means no
+ * delays at all. Only plain connections can be replayed: bytes are
+ * recorded above TLS, so the connector must not call enableTLS.
+ */
+public class CaptureReplay {
+
+	public static void main (String [] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println ("Usage: java CaptureReplay capture-file [port] [speed]");
+			System.err.println ("       java CaptureReplay -dump capture-file");
+			System.exit (1);
+		}
+
+		if (args[0].equals ("-dump")) {
+			dump (TrafficCapture.read (new File (args[1])));
+			return;
+		}
+
+		List<TrafficCapture.Record> records = TrafficCapture.read (new File (args[0]));
+		int    port  = args.length > 1 ? Integer.parseInt (args[1]) : 44010;
+		double speed = args.length > 2 ? Double.parseDouble (args[2]) : 1.0;
+
+		ServerSocket server = new ServerSocket (port);
+		System.out.println ("CaptureReplay: " + records.size () + " records, waiting connector on port " + server.getLocalPort ());
+		while (true) {
+			Socket socket = server.accept ();
+			System.out.println ("CaptureReplay: connection from " + socket.getRemoteSocketAddress () + ", replaying..");
+			replay (socket, records, speed);
+		}
+	}
+
+	/**
+	 * @brief Replays records over the provided socket.
+	 */
+	static void replay (Socket socket, List<TrafficCapture.Record> records, double speed) throws IOException {
+		final InputStream  in       = socket.getInputStream ();
+		OutputStream       out      = socket.getOutputStream ();
+		final long []      received = new long [1];
+		long               expected = 0;
+		long               base     = -1;
+		long               started  = System.nanoTime ();
+		long               delay;
+
+		/* drain what the connector writes, counting bytes */
+		Thread reader = new Thread () {
+			public void run () {
+				byte [] buffer = new byte [8192];
+				int     size;
+				try {
+					while ((size = in.read (buffer)) > 0) {
+						synchronized (received) {
+							received[0] += size;
+							received.notifyAll ();
+						}
+					}
+				} catch (IOException ex) {}
+				synchronized (received) {
+					received[0] = Long.MAX_VALUE;
+					received.notifyAll ();
+				}
+			}
+		};
+		reader.setDaemon (true);
+		reader.start ();
+
+		try {
+			for (TrafficCapture.Record record : records) {
+				if (base < 0)
+					base = record.time;
+
+				if (record.direction == TrafficCapture.OUTBOUND) {
+					/* wait for the connector to produce it */
+					expected += record.data.length;
+					synchronized (received) {
+						while (received[0] < expected)
+							received.wait ();
+					}
+					continue;
+				}
+
+				/* keep original pace between inbound records */
+				if (speed > 0) {
+					delay = (long) ((record.time - base) / speed) - (System.nanoTime () - started);
+					if (delay > 0)
+						Thread.sleep (delay / 1000000, (int) (delay % 1000000));
+				}
+				out.write (record.data);
+				out.flush ();
+			}
+			System.out.println ("CaptureReplay: replay finished in " + (System.nanoTime () - started) / 1000000 + " ms");
+		} catch (InterruptedException ex) {
+		} finally {
+			socket.close ();
+		}
+		return;
+	}
+
+	/**
+	 * @brief Prints records in a human readable form.
+	 */
+	static void dump (List<TrafficCapture.Record> records) throws UnsupportedEncodingException {
+		for (TrafficCapture.Record record : records) {
+			System.out.println ((record.direction == TrafficCapture.INBOUND ? "<< " : ">> ")
+					    + String.format ("%12.3f ms ", record.time / 1000000.0)
+					    + record.data.length + " bytes");
+			System.out.println (new String (record.data, "ISO-8859-1"));
+		}
+		return;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+
+/**
+ * @brief Prints the compact form produced by Channel0Parser for
+ * documents read from stdin, used by test/testChannel0Compact.js to
+ * check VortexXMLEngine.parseFromCompact builds the same tree as
+ * parseFromString.
+ *
+ * Each input line is a document (base64 of its UTF-8 bytes) and each
+ * output line is its compact form without the frame key (base64 of
+ * its UTF-8 bytes) or "-" when it can't be parsed.
+ *
+ * Usage: java Channel0Check < documents
+ */
+public class Channel0Check {
+
+	public static void main (String [] args) throws Exception {
+		BufferedReader reader = new BufferedReader (new InputStreamReader (System.in, "US-ASCII"));
+		PrintStream    out    = new PrintStream (new BufferedOutputStream (System.out), false, "US-ASCII");
+		String         line;
+
+		while ((line = reader.readLine ()) != null) {
+			String document = new String (Base64Coder.decode (line), "UTF-8");
+			String compact  = Channel0Parser.toCompact ("", document);
+			if (compact == null) {
+				out.println ("-");
+				continue;
+			}
+			/* skip the (empty) key */
+			out.println (new String (Base64Coder.encode (compact.substring (1).getBytes ("UTF-8"))));
+		}
+		out.flush ();
+		return;
+	}
+}
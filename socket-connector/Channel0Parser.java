@@ -0,0 +1,429 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.util.*;
+
+/**
+ * @brief Follows BEEP frames in the bytes read from a connection
+ * (DeliveryStage, before they are delivered) and parses channel 0
+ * documents (greetings, start, close, profile, ok, error) following
+ * VortexXMLEngine.parseFromString rules (see RawParser), so the JS
+ * side takes the parsed node instead of running the parser on the
+ * frame content (see VortexEngine.channel0Parse).
+ *
+ * Parsed documents are delivered in a compact form: fields
+ * separated by NUL (not allowed in XML), first the frame key
+ * ("type msgno seqno"), then "?name" followed by the value (xml
+ * header) and, in document order, "<name" (element start), "@name"
+ * followed by the value (attribute), "#text" (element content) and
+ * the element end: ">" (haveChilds true), "/" (false) or "." (not
+ * set). See VortexXMLEngine.parseFromCompact.
+ *
+ * Frames are only followed while they look right: on any unexpected
+ * header the parser disables itself and JS parses as usual.
+ */
+public class Channel0Parser {
+
+	/* scan states */
+	static final int HEADER  = 0;
+	static final int PAYLOAD = 1;
+	static final int TRAILER = 2;
+
+	/* limits: header line and channel 0 payload parsed */
+	static final int MAX_HEADER  = 128;
+	static final int MAX_PAYLOAD = 65536;
+
+	static final char SEPARATOR = '\0';
+
+	int                   scan     = HEADER;
+	final StringBuilder   header   = new StringBuilder ();
+	int                   pending;
+	int                   trailer;
+	boolean               disabled;
+
+	/* current frame */
+	String                key;
+	boolean               collect;
+	ByteArrayOutputStream payload  = new ByteArrayOutputStream ();
+
+	/* last channel 0 frame had more flag (fragmented message,
+	 * left to JS) */
+	boolean               fragmented;
+
+	/* connection encoding */
+	String                encoding;
+
+	public Channel0Parser (String _encoding) {
+		encoding = _encoding;
+	}
+
+	/**
+	 * @brief Follows the provided bytes (the next ones read from
+	 * the connection), adding to parsed the compact form of each
+	 * channel 0 document completed.
+	 */
+	public void scan (byte [] data, int offset, int length, List<String> parsed) {
+		int  end = offset + length;
+		int  count;
+		byte b;
+
+		while (offset < end && ! disabled) {
+			switch (scan) {
+			case HEADER:
+				b = data[offset++];
+				if (b == '\n') {
+					if (header.length () == 0 || header.charAt (header.length () - 1) != '\r') {
+						disabled = true;
+						break;
+					}
+					header.setLength (header.length () - 1);
+					startFrame ();
+					header.setLength (0);
+					break;
+				}
+				if (header.length () >= MAX_HEADER) {
+					disabled = true;
+					break;
+				}
+				header.append ((char) (b & 0xff));
+				break;
+			case PAYLOAD:
+				count = Math.min (pending, end - offset);
+				if (collect)
+					payload.write (data, offset, count);
+				offset  += count;
+				pending -= count;
+				if (pending == 0) {
+					scan    = TRAILER;
+					trailer = 0;
+				}
+				break;
+			case TRAILER:
+				b = data[offset++];
+				if (b != "END\r\n".charAt (trailer)) {
+					disabled = true;
+					break;
+				}
+				trailer++;
+				if (trailer < 5)
+					break;
+				scan = HEADER;
+				if (collect) {
+					String result = parse ();
+					if (result != null)
+						parsed.add (result);
+				}
+				break;
+			}
+		}
+		return;
+	}
+
+	/* header line read: TYPE channel msgno more seqno size [ansno]
+	 * or SEQ channel ackno window */
+	void startFrame () {
+		String [] pieces = header.toString ().split (" ");
+		try {
+			if (pieces[0].equals ("SEQ") && pieces.length == 4)
+				return;
+			if (pieces.length < 6 || pieces.length > 7 || pieces[0].length () != 3) {
+				disabled = true;
+				return;
+			}
+
+			int     channel = Integer.parseInt (pieces[1]);
+			boolean more    = pieces[3].equals ("*");
+			pending         = Integer.parseInt (pieces[5]);
+			if (pending < 0) {
+				disabled = true;
+				return;
+			}
+
+			collect = false;
+			if (channel == 0) {
+				/* only single frame messages */
+				collect    = ! more && ! fragmented && pending <= MAX_PAYLOAD;
+				fragmented = more;
+			}
+			key = pieces[0] + " " + pieces[2] + " " + pieces[4];
+			payload.reset ();
+		} catch (NumberFormatException ex) {
+			disabled = true;
+			return;
+		}
+
+		scan    = pending > 0 ? PAYLOAD : TRAILER;
+		trailer = 0;
+		return;
+	}
+
+	/* parse the collected payload (null if it can't be parsed) */
+	String parse () {
+		String content;
+		try {
+			content = payload.toString (encoding);
+		} catch (UnsupportedEncodingException ex) {
+			disabled = true;
+			return null;
+		}
+
+		/* skip MIME headers */
+		if (content.startsWith ("\r\n")) {
+			content = content.substring (2);
+		} else {
+			int index = content.indexOf ("\r\n\r\n");
+			if (index == -1)
+				return null;
+			content = content.substring (index + 4);
+		}
+
+		return toCompact (key, content);
+	}
+
+	/**
+	 * @brief Parses the provided document into the compact form
+	 * (null if it can't be represented or VortexXMLEngine fails
+	 * on it). Follows VortexXMLEngine.parseFromString step by
+	 * step (raw attribute values and content, white space
+	 * handling, empty nodes...) so parseFromCompact builds the
+	 * same tree.
+	 */
+	static String toCompact (String key, String document) {
+		/* NUL separates fields */
+		if (document.indexOf (SEPARATOR) != -1)
+			return null;
+
+		RawParser parser = new RawParser (document);
+		parser.result.append (key);
+		try {
+			if (! parser.parse ())
+				return null;
+		} catch (IllegalStateException ex) {
+			/* VortexXMLEngine fails on it too */
+			return null;
+		}
+		return parser.result.toString ();
+	}
+
+	/**
+	 * @internal Port of VortexXMLEngine.parseFromString and
+	 * parseXMLNode producing the compact form. Positions past the
+	 * end read as NONE (JS charAt returns "") and substrings follow
+	 * JS substring (bounded, swapped arguments).
+	 */
+	static class RawParser {
+		static final char NONE = '\uffff';
+
+		final String        data;
+		final int           length;
+		final StringBuilder result;
+		int                 position;
+
+		RawParser (String _data) {
+			data   = _data;
+			length = data.length ();
+			result = new StringBuilder (length + 32);
+		}
+
+		char at (int index) {
+			return index >= 0 && index < length ? data.charAt (index) : NONE;
+		}
+
+		String sub (int start, int end) {
+			start = Math.max (0, Math.min (start, length));
+			end   = Math.max (0, Math.min (end, length));
+			return start <= end ? data.substring (start, end) : data.substring (end, start);
+		}
+
+		int consumeWhiteSpaces (int iterator) {
+			while (iterator < length) {
+				if (at (iterator) != ' ' && at (iterator) != '\r' && at (iterator) != '\n')
+					break;
+				iterator++;
+			}
+			return iterator;
+		}
+
+		/* parseFromString: xml header and root node */
+		boolean parse () {
+			Map<String, String> headers = new LinkedHashMap<String, String> ();
+			position = 0;
+			if (data.startsWith ("<?xml")) {
+				int iterator = 5;
+				while (at (iterator) != '?' && at (iterator + 1) != '>') {
+					/* JS loops forever here */
+					if (iterator > length)
+						return false;
+					iterator++;
+				}
+
+				String header = trim (sub (5, iterator));
+				for (String piece : header.split (" ", -1)) {
+					String [] values = piece.split ("=", -1);
+					String    value  = values.length > 1 ? values[1].replace ("'", "") : "undefined";
+					if (piece.startsWith ("version='"))
+						headers.put ("version", value);
+					else if (piece.startsWith ("encoding='"))
+						headers.put ("encoding", value);
+					else if (piece.startsWith ("standalone='"))
+						headers.put ("standalone", value);
+				}
+				position = iterator + 2;
+			}
+
+			int mark = result.length ();
+			for (Map.Entry<String, String> item : headers.entrySet ())
+				result.append (SEPARATOR).append ('?').append (item.getKey ()).append (SEPARATOR).append (item.getValue ());
+			if (! parseNode (false)) {
+				result.setLength (mark);
+				return false;
+			}
+			return true;
+		}
+
+		/* parseXMLNode: appends the node found at position
+		 * (false where JS returns null: content found is set on
+		 * the parent, errors leave nothing appended) */
+		boolean parseNode (boolean haveParent) {
+			int iterator = consumeWhiteSpaces (position);
+
+			/* <![CDATA[ section */
+			if (iterator + 9 < length && data.startsWith ("<![CDATA[", iterator)) {
+				iterator += 9;
+				position  = iterator;
+				while (iterator + 2 < length) {
+					if (at (iterator) == ']' && at (iterator + 1) == ']' && at (iterator + 2) == '>')
+						break;
+					iterator++;
+				}
+				/* JS fails setting content without parent */
+				if (! haveParent)
+					throw new IllegalStateException ();
+				result.append (SEPARATOR).append ('#').append (sub (position, iterator));
+				position = iterator + 3;
+				return false;
+			}
+
+			/* content */
+			if (at (iterator) != '<') {
+				if (! haveParent)
+					return false;
+				while (iterator < length && at (iterator) != '<')
+					iterator++;
+				result.append (SEPARATOR).append ('#').append (sub (position, iterator));
+				position = iterator;
+				return false;
+			}
+
+			position = iterator;
+			while (iterator < length) {
+				if (at (iterator) == ' ' || at (iterator) == '>')
+					break;
+				iterator++;
+			}
+			if (iterator == length)
+				return false;
+
+			String  name       = sub (position + 1, iterator);
+			int     mark       = result.length ();
+			Boolean haveChilds = null;
+			result.append (SEPARATOR).append ('<').append (name);
+
+			/* attributes */
+			while (iterator < length) {
+				while (iterator < length && at (iterator) == ' ')
+					iterator++;
+				if (iterator >= length)
+					return fail (mark);
+				if (at (iterator) == '/' && at (iterator + 1) == '>') {
+					haveChilds = Boolean.FALSE;
+					iterator  += 2;
+					break;
+				}
+				if (at (iterator) == '>') {
+					haveChilds = Boolean.TRUE;
+					iterator++;
+					break;
+				}
+
+				position = iterator;
+				while (iterator < length && at (iterator) != '=')
+					iterator++;
+				String attrName = sub (position, iterator);
+
+				iterator++;
+				if (at (iterator) != '\'' && at (iterator) != '"')
+					return fail (mark);
+				iterator++;
+
+				position = iterator;
+				while (iterator < length && at (iterator) != '\'' && at (iterator) != '"')
+					iterator++;
+				if (iterator == length)
+					return fail (mark);
+
+				result.append (SEPARATOR).append ('@').append (attrName);
+				result.append (SEPARATOR).append (sub (position, iterator));
+				iterator++;
+				position = iterator;
+			}
+
+			iterator = consumeWhiteSpaces (iterator);
+			position = iterator;
+
+			/* childs and content */
+			if (haveChilds == Boolean.TRUE) {
+				if (at (iterator) == '<' && at (iterator + 1) == '/') {
+					/* <empty></empty> */
+					haveChilds = Boolean.FALSE;
+				} else {
+					while (parseNode (true)) {
+						iterator = consumeWhiteSpaces (position);
+						position = iterator;
+						if (at (iterator) == '<' && at (iterator + 1) == '/')
+							break;
+					}
+					iterator = consumeWhiteSpaces (position);
+				}
+
+				if (at (iterator) != '<' || at (iterator + 1) != '/')
+					return fail (mark);
+				iterator += 2;
+				while (at (iterator) != '>' && iterator <= length)
+					iterator++;
+				if (length < iterator)
+					return fail (mark);
+				if (! sub (position + 2, iterator).equals (name))
+					return fail (mark);
+				position = iterator + 1;
+			}
+
+			/* node end: haveChilds true, false or not set
+			 * (input ended inside the start tag) */
+			result.append (SEPARATOR).append (haveChilds == null ? '.' : haveChilds.booleanValue () ? '>' : '/');
+			return true;
+		}
+
+		boolean fail (int mark) {
+			result.setLength (mark);
+			return false;
+		}
+
+		/* VortexEngine.trim (\s as JS defines it) */
+		static String trim (String value) {
+			int start = 0;
+			int end   = value.length ();
+			while (start < end && isSpace (value.charAt (start)))
+				start++;
+			while (end > start && isSpace (value.charAt (end - 1)))
+				end--;
+			return value.substring (start, end);
+		}
+
+		static boolean isSpace (char value) {
+			return Character.isWhitespace (value) || Character.isSpaceChar (value) || value == '\ufeff';
+		}
+	}
+}
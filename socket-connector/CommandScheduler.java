@@ -0,0 +1,177 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.util.*;
+
+/**
+ * @brief Priority aware command queue used by the dispatcher.
+ *
+ * Commands are queued on their connection lane (SocketState) so
+ * commands of a connection always run in the order they were
+ * requested. Lanes with commands are queued into one of the priority
+ * classes (the highest priority of their commands) and classes are
+ * served with weighted round robin (WEIGHTS) so lower classes are
+ * never starved. Inside a class, lanes take turns, so a sliced bulk
+ * send (see SendCommand) lets other connections run between slices.
+ */
+public class CommandScheduler {
+
+	/**
+	 * @brief Latency sensitive commands (small interactive frames).
+	 */
+	public static final int PRIORITY_HIGH   = 0;
+	/**
+	 * @brief Default priority.
+	 */
+	public static final int PRIORITY_NORMAL = 1;
+	/**
+	 * @brief Bulk transfers.
+	 */
+	public static final int PRIORITY_BULK   = 2;
+
+	/* picks granted to each class on each round */
+	static final int [] WEIGHTS = {8, 4, 1};
+
+	/* lanes ready to run, by priority class */
+	final List<ArrayDeque<SocketState>> ready = new ArrayList<ArrayDeque<SocketState>> ();
+	final int []                        credits = new int [WEIGHTS.length];
+
+	public CommandScheduler () {
+		for (int i = 0; i < WEIGHTS.length; i++)
+			ready.add (new ArrayDeque<SocketState> ());
+		System.arraycopy (WEIGHTS, 0, credits, 0, WEIGHTS.length);
+	}
+
+	/**
+	 * @brief Clamps the provided priority into a valid class.
+	 */
+	public static int checkPriority (int priority) {
+		if (priority < PRIORITY_HIGH)
+			return PRIORITY_HIGH;
+		if (priority > PRIORITY_BULK)
+			return PRIORITY_BULK;
+		return priority;
+	}
+
+	/**
+	 * @brief Queues a command at the end of its connection lane.
+	 *
+	 * @param state The connection the command belongs to.
+	 * @param cmd The command.
+	 * @param priority The command priority (PRIORITY_*).
+	 */
+	public synchronized void push (SocketState state, Command cmd, int priority) {
+		priority = checkPriority (priority);
+		state.laneCommands.addLast (cmd);
+		state.lanePriorities.addLast (Integer.valueOf (priority));
+
+		if (state.laneBusy)
+			return; /* requeued by done () */
+
+		if (! state.laneQueued) {
+			state.lanePriority = priority;
+			state.laneQueued   = true;
+			ready.get (priority).addLast (state);
+		} else if (priority < state.lanePriority) {
+			/* raise the lane: the new command can't run
+			 * before the ones already queued */
+			ready.get (state.lanePriority).remove (state);
+			state.lanePriority = priority;
+			ready.get (priority).addLast (state);
+		}
+		notify ();
+		return;
+	}
+
+	/**
+	 * @brief Puts back, at the head of its lane, the command that is
+	 * running (used to continue sliced operations after other
+	 * lanes had their turn).
+	 */
+	public synchronized void pushFront (SocketState state, Command cmd) {
+		state.laneCommands.addFirst (cmd);
+		state.lanePriorities.addFirst (Integer.valueOf (state.laneCurrentPriority));
+		return;
+	}
+
+	/**
+	 * @brief Removes the commands queued on the connection lane
+	 * (not the one running).
+	 *
+	 * @return The commands removed, in order.
+	 */
+	public synchronized List<Command> drop (SocketState state) {
+		List<Command> result = new ArrayList<Command> (state.laneCommands);
+		state.laneCommands.clear ();
+		state.lanePriorities.clear ();
+		if (state.laneQueued) {
+			ready.get (state.lanePriority).remove (state);
+			state.laneQueued = false;
+		}
+		return result;
+	}
+
+	/**
+	 * @brief Waits for the next lane to run. The lane is marked
+	 * busy and its command is available at laneCurrent until
+	 * done () is called.
+	 */
+	public synchronized SocketState pop () throws InterruptedException {
+		SocketState state;
+		while (true) {
+			state = next ();
+			if (state != null)
+				break;
+			wait ();
+		}
+
+		state.laneQueued          = false;
+		state.laneBusy            = true;
+		state.laneCurrent         = state.laneCommands.pollFirst ();
+		state.laneCurrentPriority = state.lanePriorities.pollFirst ().intValue ();
+		return state;
+	}
+
+	/**
+	 * @brief Finishes the lane turn, queuing it again if it has
+	 * more commands.
+	 */
+	public synchronized void done (SocketState state) {
+		state.laneBusy    = false;
+		state.laneCurrent = null;
+		if (state.laneCommands.isEmpty ())
+			return;
+
+		/* lane priority is the highest of its commands */
+		int priority = PRIORITY_BULK;
+		for (Integer value : state.lanePriorities)
+			priority = Math.min (priority, value.intValue ());
+		state.lanePriority = priority;
+		state.laneQueued   = true;
+		ready.get (priority).addLast (state);
+		notify ();
+		return;
+	}
+
+	/* weighted round robin pick */
+	SocketState next () {
+		boolean any = false;
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < WEIGHTS.length; i++) {
+				if (ready.get (i).isEmpty ())
+					continue;
+				any = true;
+				if (credits[i] > 0) {
+					credits[i]--;
+					return ready.get (i).pollFirst ();
+				}
+			}
+			if (! any)
+				return null;
+			/* all waiting classes used their turn */
+			System.arraycopy (WEIGHTS, 0, credits, 0, WEIGHTS.length);
+		}
+		return null;
+	}
+}
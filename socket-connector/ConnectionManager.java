@@ -0,0 +1,268 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.util.*;
+
+/**
+ * @brief Tracks every connection (SocketState) opened by a
+ * ConnectorCore, enforcing per page connection and memory limits,
+ * closing connections that stay idle too long and shutting all of
+ * them down in parallel (with a bounded time) when the applet stops.
+ */
+public class ConnectionManager {
+
+	/**
+	 * @brief Max number of connections (0 for no limit).
+	 */
+	public int  maxConnections  = 64;
+	/**
+	 * @brief Max amount of memory (bytes) used by connections:
+	 * read buffers plus content queued to be sent (0 for no limit).
+	 */
+	public long maxMemory       = 16 * 1024 * 1024;
+	/**
+	 * @brief Connections without reads or writes for longer than
+	 * this amount of milliseconds are closed (0 disables it).
+	 */
+	public long idleTimeout     = 0;
+	/**
+	 * @brief Max time (milliseconds) to wait for connections to be
+	 * closed on shutdown.
+	 */
+	public long shutdownTimeout = 2000;
+
+	/* connections tracked, bytes queued to be sent and held in
+	 * read buffers (see SocketListener.resize) */
+	final Set<SocketState> states  = new LinkedHashSet<SocketState> ();
+	long                   pending = 0;
+	long                   buffers = 0;
+
+	ConnectorCore          core;
+	boolean                running;
+
+	public ConnectionManager (ConnectorCore _core) {
+		core = _core;
+	}
+
+	/**
+	 * @brief Registers a new connection.
+	 *
+	 * @return null if registered, otherwise the reason why the
+	 * connection is rejected.
+	 */
+	public synchronized String register (SocketState state) {
+		if (maxConnections > 0 && states.size () >= maxConnections)
+			return "Connection limit reached (" + maxConnections + " connections)";
+		if (maxMemory > 0 && memory () + ReadBufferPool.MIN_SIZE > maxMemory)
+			return "Connection memory limit reached (" + maxMemory + " bytes)";
+		state.lastActivity = System.currentTimeMillis ();
+		states.add (state);
+
+		/* the smallest read buffer is accounted until the
+		 * listener takes its own */
+		state.readBuffer  = ReadBufferPool.MIN_SIZE;
+		buffers          += state.readBuffer;
+		return null;
+	}
+
+	/**
+	 * @brief Stops tracking the provided connection.
+	 */
+	public synchronized void unregister (SocketState state) {
+		if (states.remove (state)) {
+			pending            -= state.pendingBytes;
+			state.pendingBytes  = 0;
+			buffers            -= state.readBuffer;
+		}
+		return;
+	}
+
+	/**
+	 * @brief Accounts the read buffer size of the provided
+	 * connection (0 once returned).
+	 *
+	 * @return false if the memory limit does not allow it (only
+	 * when growing over the smallest size, accounted on register).
+	 */
+	public synchronized boolean resize (SocketState state, int size) {
+		if (! states.contains (state)) {
+			state.readBuffer = size;
+			return true;
+		}
+		if (size > state.readBuffer && size > ReadBufferPool.MIN_SIZE && maxMemory > 0 && memory () + size - state.readBuffer > maxMemory)
+			return false;
+		buffers          += size - state.readBuffer;
+		state.readBuffer  = size;
+		return true;
+	}
+
+	/**
+	 * @brief Accounts bytes queued to be sent on the provided
+	 * connection.
+	 *
+	 * @return false if the memory limit does not allow it.
+	 */
+	public synchronized boolean reserve (SocketState state, int bytes) {
+		if (maxMemory > 0 && memory () + bytes > maxMemory)
+			return false;
+		state.pendingBytes += bytes;
+		pending            += bytes;
+		return true;
+	}
+
+	/**
+	 * @brief Releases bytes accounted with reserve once they were
+	 * sent (or dropped).
+	 */
+	public synchronized void release (SocketState state, int bytes) {
+		if (! states.contains (state))
+			return;
+		state.pendingBytes -= bytes;
+		pending            -= bytes;
+		return;
+	}
+
+	/**
+	 * @brief Memory estimated for all connections tracked.
+	 */
+	public synchronized long memory () {
+		return buffers + pending;
+	}
+
+	/**
+	 * @brief Number of connections tracked.
+	 */
+	public synchronized int count () {
+		return states.size ();
+	}
+
+	/**
+	 * @brief Closes connections idle for more than idleTimeout
+	 * (called periodically by the ConnectorRuntime reaper).
+	 */
+	public void reap () {
+		List<SocketState> idle = new ArrayList<SocketState> ();
+		long              now  = System.currentTimeMillis ();
+
+		/* collect idle connections */
+		synchronized (this) {
+			if (! running || idleTimeout <= 0)
+				return;
+			for (SocketState state : states) {
+				if (now - state.lastActivity > idleTimeout && state.pendingBytes == 0)
+					idle.add (state);
+			}
+		}
+
+		for (SocketState state : idle) {
+			try {
+				LogHandling.warn (state, "ConnectionManager: closing connection idle for more than " + idleTimeout + " ms");
+			} catch (Exception ex) {
+				/* JS side is gone, keep closing */
+			}
+			try {
+				core.close (state);
+			} catch (Exception ex) {
+				/* JS side is gone: close without notifying */
+				closeQuietly (state);
+			}
+		}
+		return;
+	}
+
+	/**
+	 * @brief Starts accepting connections (stopped by shutdown).
+	 */
+	public synchronized void start () {
+		running = true;
+		return;
+	}
+
+	/**
+	 * @brief Closes all connections in parallel without notifying
+	 * the browser, waiting at most shutdownTimeout. Commands still
+	 * queued for them are dropped (a connect running meanwhile sees
+	 * the connection closed, see SocketCommand).
+	 */
+	public void shutdown () {
+		final List<SocketState> list;
+		synchronized (this) {
+			running = false;
+			list = new ArrayList<SocketState> (states);
+			states.clear ();
+			pending = 0;
+			buffers = 0;
+			for (SocketState state : list) {
+				state.pendingBytes = 0;
+				state.closed       = true;
+			}
+		}
+		if (list.isEmpty ())
+			return;
+
+		/* nothing else runs for them */
+		for (SocketState state : list)
+			core.dropQueued (state);
+
+		/* close each connection on its own thread: TLS close
+		 * may block writing close_notify */
+		List<Thread> closers = new ArrayList<Thread> ();
+		for (final SocketState state : list) {
+			Thread closer = new Thread ("JavaSocketConnector-closer") {
+				public void run () {
+					closeQuietly (state);
+					releaseBuffer (state);
+				}
+			};
+			closer.setDaemon (true);
+			closer.start ();
+			closers.add (closer);
+		}
+
+		long deadline = System.currentTimeMillis () + shutdownTimeout;
+		try {
+			for (Thread closer : closers) {
+				long left = deadline - System.currentTimeMillis ();
+				if (left <= 0)
+					break;
+				closer.join (left);
+			}
+		} catch (InterruptedException ex) {}
+		return;
+	}
+
+	/* returns the read buffer of the connection listener into
+	 * the ReadBufferPool once it stopped (the buffer is in use
+	 * until then) */
+	void releaseBuffer (SocketState state) {
+		SocketListener listener = state.listener;
+		if (listener != null) {
+			try {
+				listener.join (shutdownTimeout);
+			} catch (InterruptedException ex) {}
+			if (! listener.isAlive ())
+				listener.resize (0);
+		}
+		state.readBuffer = 0;
+		return;
+	}
+
+	/* closes connection resources without browser notifications */
+	static void closeQuietly (SocketState state) {
+		if (state.inbound != null)
+			state.inbound.discard ();
+		if (state.listener != null) {
+			state.listener.running = false;
+			if (state.listener.listenerThread != null)
+				state.listener.listenerThread.interrupt ();
+		}
+		try {
+			if (state.socket != null)
+				state.socket.close ();
+		} catch (Exception ex) {}
+		if (state.capture != null)
+			state.capture.close ();
+		return;
+	}
+}
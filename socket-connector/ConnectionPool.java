@@ -0,0 +1,342 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * @brief Warm standby connections: for each configured peer (host
+ * and port) keeps up to size connections already established,
+ * refilled in background, so a connect (see SocketCommand) skips DNS
+ * and the TCP handshake.
+ *
+ * Only plain connections are kept: BEEP negotiates TLS on the
+ * connection once greetings were exchanged, so there is no point
+ * where an already upgraded connection could replace it
+ * (EnableTLSCommand always does the handshake).
+ *
+ * The pool is owned by the ConnectorRuntime, so it is shared by every
+ * page. Each peer is kept while a core (page) that configured it is
+ * running (see release). The refill thread checks the entries kept
+ * (a peer that closed is dropped, what it sent is kept for the
+ * listener) and replaces them after maxIdle, so taking one does no
+ * I/O.
+ */
+public class ConnectionPool implements Runnable {
+
+	/* entries by peer limit */
+	static final int  MAX_SIZE        = 16;
+
+	/* timeouts (milliseconds): connect, refill check interval and
+	 * wait after a failed connect before retrying */
+	static final int  CONNECT_TIMEOUT = 10000;
+	static final long CHECK_INTERVAL  = 1000;
+	static final long RETRY_DELAY     = 5000;
+
+	/* bytes an entry may receive while kept (the greeting of
+	 * the peer, usually), a peer sending more is dropped */
+	static final int  EARLY_LIMIT     = 8192;
+
+	/* time (milliseconds) an entry is kept before replacing it
+	 * (peers usually drop connections idle for long) */
+	long                    maxIdle   = 30000;
+
+	final Map<String, Slot> slots     = new HashMap<String, Slot> ();
+	Thread                  thread;
+
+	/* where entries are read when checked, only used by the
+	 * refill thread (content found is copied into the entry) */
+	final byte []           probe     = new byte [EARLY_LIMIT];
+
+	/**
+	 * @brief A connection established, ready to be taken.
+	 */
+	static class Entry {
+		Socket  socket;
+		long    created;
+
+		/* bytes read while checking the connection */
+		byte [] early;
+		int     earlyCount;
+
+		/* peer closed (found by the check) and taken (no more
+		 * checks), both guarded by the entry */
+		boolean closed;
+		boolean taken;
+	}
+
+	/* entries of one peer */
+	static class Slot {
+		String            host;
+		int               port;
+		int               size;
+		long              retryAt;
+
+		/* size configured by each core (size is the largest) */
+		Map<ConnectorCore, Integer> owners = new HashMap<ConnectorCore, Integer> ();
+		boolean           filling;
+		ArrayDeque<Entry> ready = new ArrayDeque<Entry> ();
+	}
+
+	static String key (String host, int port) {
+		return host + ":" + port;
+	}
+
+	/**
+	 * @brief Configures how many connections are kept for the
+	 * provided peer on behalf of the provided core (0 stops
+	 * keeping them for it, closing them when no other core wants
+	 * them), starting the refill thread on first use.
+	 */
+	public void configure (ConnectorCore core, String host, int port, int size) {
+		size = Math.max (0, Math.min (size, MAX_SIZE));
+
+		List<Entry> dropped = new ArrayList<Entry> ();
+		synchronized (this) {
+			String key  = key (host, port);
+			Slot   slot = slots.get (key);
+			if (slot == null && size > 0) {
+				slot      = new Slot ();
+				slot.host = host;
+				slot.port = port;
+				slots.put (key, slot);
+			}
+			if (slot != null) {
+				if (size == 0)
+					slot.owners.remove (core);
+				else
+					slot.owners.put (core, Integer.valueOf (size));
+				slot.retryAt = 0;
+				resize (key, slot, dropped);
+			}
+
+			if (thread == null && size > 0) {
+				thread = new Thread (this, "JavaSocketConnector-pool");
+				thread.setDaemon (true);
+				thread.setPriority (Thread.MIN_PRIORITY);
+				thread.start ();
+			}
+			notifyAll ();
+		}
+		for (Entry entry : dropped)
+			closeQuietly (entry.socket);
+		return;
+	}
+
+	/**
+	 * @brief Drops the configuration done by the provided core
+	 * (stopped), closing the entries of peers no other core wants.
+	 */
+	public void release (ConnectorCore core) {
+		List<Entry> dropped = new ArrayList<Entry> ();
+		synchronized (this) {
+			for (Map.Entry<String, Slot> item : new ArrayList<Map.Entry<String, Slot>> (slots.entrySet ())) {
+				if (item.getValue ().owners.remove (core) != null)
+					resize (item.getKey (), item.getValue (), dropped);
+			}
+			notifyAll ();
+		}
+		for (Entry entry : dropped)
+			closeQuietly (entry.socket);
+		return;
+	}
+
+	/* update slot size from its owners (removed without owners),
+	 * adding entries over it to dropped */
+	void resize (String key, Slot slot, List<Entry> dropped) {
+		slot.size = 0;
+		for (Integer size : slot.owners.values ())
+			slot.size = Math.max (slot.size, size.intValue ());
+		if (slot.size == 0)
+			slots.remove (key);
+		while (slot.ready.size () > slot.size)
+			dropped.add (slot.ready.removeLast ());
+		return;
+	}
+
+	/**
+	 * @brief Returns the entries ready for the provided peer.
+	 */
+	public synchronized int ready (String host, int port) {
+		Slot slot = slots.get (key (host, port));
+		return slot == null ? 0 : slot.ready.size ();
+	}
+
+	/**
+	 * @brief Takes a connection to the provided peer, or null if
+	 * there is none ready (the caller connects as usual). Entries
+	 * the last check found closed or kept for more than maxIdle
+	 * are skipped. The slot is refilled in background.
+	 */
+	public Entry take (String host, int port) {
+		String  key = key (host, port);
+		Entry   entry;
+		boolean usable;
+
+		while (true) {
+			synchronized (this) {
+				Slot slot = slots.get (key);
+				if (slot == null)
+					return null;
+				entry = slot.ready.pollFirst ();
+				notifyAll ();
+			}
+			if (entry == null)
+				return null;
+
+			/* waits for a check in progress */
+			synchronized (entry) {
+				entry.taken = true;
+				usable      = ! entry.closed && ! entry.socket.isClosed () && ! entry.socket.isInputShutdown ()
+					&& System.currentTimeMillis () - entry.created <= maxIdle;
+			}
+			if (usable)
+				return entry;
+			closeQuietly (entry.socket);
+		}
+	}
+
+	/* check the peer didn't close the connection, keeping what
+	 * it sent (a read with a minimal timeout), refill thread only */
+	void check (Entry entry) {
+		synchronized (entry) {
+			if (entry.taken || entry.closed)
+				return;
+			int size;
+			try {
+				entry.socket.setSoTimeout (1);
+				try {
+					size = entry.socket.getInputStream ().read (probe, 0, EARLY_LIMIT - entry.earlyCount);
+				} catch (SocketTimeoutException ex) {
+					/* nothing sent, connection alive */
+					size = 0;
+				}
+				entry.socket.setSoTimeout (0);
+			} catch (IOException ex) {
+				size = -1;
+			}
+			if (size < 0 || entry.earlyCount + size >= EARLY_LIMIT) {
+				entry.closed = true;
+				return;
+			}
+			if (size > 0) {
+				entry.early = entry.early == null ? new byte [EARLY_LIMIT] : entry.early;
+				System.arraycopy (probe, 0, entry.early, entry.earlyCount, size);
+				entry.earlyCount += size;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * @internal Refill loop: checks the entries kept, connects
+	 * (one at a time) for slots with less entries than configured
+	 * and replaces entries kept for more than maxIdle.
+	 */
+	public void run () {
+		Slot slot;
+		Entry entry;
+
+		while (true) {
+			try {
+				expire ();
+				synchronized (this) {
+					slot = next ();
+					if (slot == null) {
+						wait (CHECK_INTERVAL);
+						continue;
+					}
+					slot.filling = true;
+				}
+
+				/* connect outside the lock */
+				entry = open (slot);
+
+				synchronized (this) {
+					slot.filling = false;
+					if (entry == null) {
+						slot.retryAt = System.currentTimeMillis () + RETRY_DELAY;
+					} else if (slots.get (key (slot.host, slot.port)) == slot && slot.ready.size () < slot.size) {
+						slot.ready.addLast (entry);
+						entry = null;
+					}
+				}
+				/* slot removed or shrunk meanwhile */
+				if (entry != null)
+					closeQuietly (entry.socket);
+			} catch (InterruptedException ex) {
+				return;
+			} catch (Exception ex) {
+				/* keep refilling */
+			}
+		}
+	}
+
+	/* next slot to refill (null if none) */
+	Slot next () {
+		long now = System.currentTimeMillis ();
+		for (Slot slot : slots.values ()) {
+			if (slot.ready.size () < slot.size && ! slot.filling && now >= slot.retryAt)
+				return slot;
+		}
+		return null;
+	}
+
+	/* check entries (outside the lock) and close the ones found
+	 * closed or kept for more than maxIdle */
+	void expire () {
+		List<Entry> kept    = new ArrayList<Entry> ();
+		List<Entry> expired = new ArrayList<Entry> ();
+		synchronized (this) {
+			for (Slot slot : slots.values ())
+				kept.addAll (slot.ready);
+		}
+		for (Entry entry : kept)
+			check (entry);
+
+		long now = System.currentTimeMillis ();
+		synchronized (this) {
+			for (Slot slot : slots.values ()) {
+				Iterator<Entry> iter = slot.ready.iterator ();
+				while (iter.hasNext ()) {
+					Entry entry = iter.next ();
+					if (entry.closed || now - entry.created > maxIdle) {
+						iter.remove ();
+						expired.add (entry);
+					}
+				}
+			}
+		}
+		for (Entry entry : expired)
+			closeQuietly (entry.socket);
+		return;
+	}
+
+	/* establish a connection for the provided slot (null if it
+	 * fails) */
+	Entry open (Slot slot) {
+		Socket socket = null;
+		try {
+			socket = new Socket ();
+			socket.connect (new InetSocketAddress (slot.host, slot.port), CONNECT_TIMEOUT);
+
+			Entry entry   = new Entry ();
+			entry.socket  = socket;
+			entry.created = System.currentTimeMillis ();
+			return entry;
+		} catch (Exception ex) {
+			closeQuietly (socket);
+			return null;
+		}
+	}
+
+	static void closeQuietly (Socket socket) {
+		try {
+			if (socket != null)
+				socket.close ();
+		} catch (IOException ex) {}
+		return;
+	}
+}
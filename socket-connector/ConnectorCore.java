@@ -0,0 +1,399 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+import netscape.javascript.*;
+import java.net.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @brief Connector bound to a browser reference (one per applet
+ * instance): socket operations, limits and configuration of its
+ * connections, which are run and delivered by the ConnectorRuntime
+ * shared by the JVM. The applet (JavaSocketConnector) delegates into
+ * it, and tools (see LoadGenerator) can drive it with a stub browser
+ * without loading the applet.
+ */
+public class ConnectorCore {
+
+	/* A reference to the current browser (tab) opening the
+	 * component */
+	JSObject      browser      = null; /* browser */
+
+	/* shared engine and the parts of it used by commands
+	 * (dispatcher queue, TLS material) and the delivery stage
+	 * of this core (its JS handlers don't stall other pages) */
+	ConnectorRuntime runtime   = null;
+	CommandScheduler scheduler = null; /* command queue */
+	DeliveryStage delivery     = null;
+	TLSContextCache tls        = null;
+
+	/* list of callers that are inside the applet */
+	Callers       callers      = null;
+
+	/* JS JavaSocketConnector object (used by direct bridge calls) */
+	JSObject      jsConnector  = null;
+
+	/* connections opened (limits, idle reaping and shutdown) */
+	ConnectionManager manager  = null;
+
+	/* load TLS material in background on start (tlsPrewarm) */
+	boolean       tlsPrewarm   = false;
+
+	/* bytes a connection may queue before its reads wait
+	 * (inboundLimit) and how many of them are kept in direct
+	 * buffers before spilling into a temp file (inboundMemory,
+	 * spillDir) */
+	int           inboundLimit  = 64 * 1024 * 1024;
+	int           inboundMemory = 256 * 1024;
+	File          spillDir      = null;
+
+	/* largest read buffer a connection listener grows to
+	 * (readBufferMax, see ReadBufferPool) */
+	int           readBufferMax = 256 * 1024;
+
+	/* creates connection sockets (networkEmulation applet param
+	 * installs an EmulatedTransport) */
+	TransportFactory transport  = TransportFactory.DIRECT;
+
+	/* traffic capture configuration (captureDir applet param,
+	 * capture disabled when null), files kept (captureFiles, the
+	 * oldest ones written by this core are removed) */
+	File          captureDir   = null;
+	int           captureSize  = 4 * 1024 * 1024;
+	int           captureFiles = 16;
+	final LinkedList<File> captures = new LinkedList<File> ();
+
+	/**
+	 * @brief Creates the connector core for the provided browser.
+	 *
+	 * @param _browser The browser (or stub) receiving notifications.
+	 */
+	public ConnectorCore (JSObject _browser) {
+		browser      = _browser;
+		runtime      = ConnectorRuntime.get ();
+		scheduler    = runtime.scheduler;
+		delivery     = new DeliveryStage ();
+		tls          = runtime.tls;
+		callers      = runtime.callers;
+		manager      = new ConnectionManager (this);
+	}
+
+	/** 
+	 * @brief Registers the core into the shared runtime (started
+	 * by the first one) and notifies the browser that the
+	 * component is ready.
+	 */
+	public void start () {
+		manager.start ();
+		delivery.start ();
+		runtime.register (this);
+
+		/* Notify the browser that the component was
+		 * loaded. */
+		JSObject member = (JSObject) browser.getMember ("JavaSocketConnector");
+		member.setMember ("isReady", true);
+		jsConnector = member;
+
+		/* warm up TLS after notifying isReady so it is not
+		 * delayed (done once for the JVM) */
+		if (tlsPrewarm)
+			tls.prewarm ();
+	}
+
+	/** 
+	 * @brief Closes all connections of this core (bounded by
+	 * manager.shutdownTimeout), stops its delivery stage and
+	 * unregisters it from the runtime, dropping its ConnectionPool
+	 * configuration.
+	 */
+	public void stop () {
+		runtime.unregister (this);
+		runtime.pool.release (this);
+		manager.shutdown ();
+		delivery.stop ();
+	}
+
+	/** 
+	 * @brief Socket connect to the host and port provided. Once
+	 * the connection is created, it is notified on the provided
+	 * handler.
+	 * 
+	 * @param host The host to connect to.
+	 * @param port The port to connect to.
+	 * @param encoding The connection encoding..
+	 * @param conn_id The connection id identifer of the caller object.
+	 */
+	public SocketState connect (String host, int port, String encoding, String conn_id) {
+		return connect (host, port, encoding, conn_id, CommandScheduler.PRIORITY_NORMAL);
+	}
+
+	/** 
+	 * @brief Same as connect but queuing the operation with the
+	 * provided priority (see CommandScheduler.PRIORITY_*).
+	 */
+	public SocketState connect (String host, int port, String encoding, String conn_id, int priority) {
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count++;
+		}
+
+		/* create the socket command */
+		SocketState   state = new SocketState ();
+		SocketCommand cmd   = new SocketCommand ();
+		cmd.host        = host;
+		cmd.port        = port;
+		state.conn_id   = conn_id;
+		state.encoding  = encoding;
+		state.browser   = browser;
+		state.core      = this;
+		/* System.out.println ("Received connection id: " + conn_id); */
+		cmd.state     = state;
+
+		/* track the connection (the command reports the error
+		 * if it is rejected by the configured limits) */
+		cmd.rejectReason = manager.register (state);
+
+		/* queue the command */
+		scheduler.push (state, cmd, priority);
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count--;
+			callers.notify ();
+		}
+		
+		return state;
+	}
+
+	/** 
+	 * @brief Allows to send the provided string over the provided
+	 * out stream (associated to a particular socket).
+	 *
+	 * @param content The content to be sent.
+	 * @param length The amount of data to be written (bytes once
+	 * encoded, a negative value writes all the content).
+	 * @param state The connection state to write on.
+	 */
+	public boolean send (String content, int length, SocketState state){
+		return send (content, length, state, CommandScheduler.PRIORITY_NORMAL);
+	}
+
+	/** 
+	 * @brief Same as send but queuing the operation with the
+	 * provided priority (see CommandScheduler.PRIORITY_*). Big
+	 * contents are written in slices so other connections' commands
+	 * can run between them.
+	 */
+	public boolean send (String content, int length, SocketState state, int priority){
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count++;
+		}
+
+		/* check connection encoding is supported (the encoder
+		 * is cached on the connection for next sends) */
+		if (state.getEncoder () == null) {
+			LogHandling.error (state, "Unsupported enconding type: " + state.encoding); 
+
+			/* notify caller inside */
+			synchronized (callers) {
+				callers.count--;
+				callers.notify ();
+			}
+			return false;
+		}
+
+		/* account content queued (two bytes per char) */
+		if (! manager.reserve (state, content.length () * 2)) {
+			LogHandling.error (state, "Unable to send content, connection memory limit reached (" + manager.maxMemory + " bytes)"); 
+
+			/* notify caller inside */
+			synchronized (callers) {
+				callers.count--;
+				callers.notify ();
+			}
+			return false;
+		}
+
+		/* queue a send operation (reusing a released command) */
+		SendCommand sendCmd = SendCommand.acquire ();
+		sendCmd.reserved = content.length () * 2;
+		sendCmd.content = content;
+		sendCmd.length  = length;
+		sendCmd.state   = state;
+
+		/* queue command */
+		scheduler.push (state, sendCmd, priority);
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count--;
+			callers.notify ();
+		}
+
+		return true;
+	}
+
+	/** 
+	 * @brief Activates TLS support on the provided socket object
+	 * (caller reference).
+	 */
+	public boolean enableTLS (SocketState state) {
+		return enableTLS (state, CommandScheduler.PRIORITY_NORMAL);
+	}
+
+	/** 
+	 * @brief Same as enableTLS but queuing the operation with the
+	 * provided priority (see CommandScheduler.PRIORITY_*).
+	 */
+	public boolean enableTLS (SocketState state, int priority) {
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count++;
+		}
+
+		/* call to create command */
+		EnableTLSCommand cmd = new EnableTLSCommand ();
+		cmd.state            = state;
+
+		scheduler.push (state, cmd, priority);
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count--;
+			callers.notify ();
+		}
+
+		return true;
+	}
+
+	/** 
+	 * @brief Closes the socket by closing internal socket, output
+	 * stream and input stream. The method also changes the
+	 * readyState of the socket and fires the onclose event.
+	 *
+	 * @param caller The caller and at the same time the socket.
+	 */
+	public void close (SocketState state) {
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count++;
+		}
+
+		/* close all items (content not delivered yet is
+		 * dropped, and a connect still queued is skipped) */
+		state.closed = true;
+		manager.unregister (state);
+		if (state.inbound != null)
+			state.inbound.discard ();
+		if (state.listener != null)
+			state.listener.close ();
+		try {state.out.close ();} catch (Exception ex) {}
+
+		/* now change ready state */
+		state.setMember ("readyState", 2); 
+
+		/* fire onclose event */
+		notify (state, "onclose", null);
+
+		/* notify caller inside */
+		synchronized (callers) {
+			callers.count--;
+			callers.notify ();
+		}
+		
+		return;
+	}
+
+	/** 
+	 * @brief Drops the commands queued on the connection (issued
+	 * while connecting or enabling TLS) once that failed.
+	 */
+	void dropQueued (SocketState state) {
+		for (Command cmd : scheduler.drop (state))
+			discard (state, cmd);
+		return;
+	}
+
+	/* releases a command of the provided connection that won't
+	 * run (its reserved memory and, for sends, the command) */
+	void discard (SocketState state, Command cmd) {
+		if (cmd instanceof SendCommand) {
+			manager.release (state, ((SendCommand) cmd).reserved);
+			((SendCommand) cmd).release ();
+		}
+		return;
+	}
+
+	/* keeps the provided capture file, removing the oldest ones
+	 * written by this core over captureFiles (a file still
+	 * mapped may not be removed on some platforms, left there) */
+	void keepCapture (File file) {
+		synchronized (captures) {
+			captures.addLast (file);
+			while (captures.size () > Math.max (1, captureFiles))
+				captures.removeFirst ().delete ();
+		}
+		return;
+	}
+
+	/** 
+	 * @brief Notifies the provided handler (onopen, onmessage,
+	 * onclose, ontls...) of the connection JS object, passing arg
+	 * as configured by the connection bridge encoding. Traced, see
+	 * ConnectorTrace.
+	 */
+	public void notify (SocketState state, String handler, Object arg) {
+		Object event = ConnectorTrace.trace.beginNotify ();
+		try {
+			bridgeCall (state, handler, arg);
+		} finally {
+			ConnectorTrace.trace.endNotify (event, state, handler, arg);
+		}
+		return;
+	}
+
+	void bridgeCall (SocketState state, String handler, Object arg) {
+		/* LogHandling.info (state, "Doing handler notification for: " + handler);   */
+
+		/* call to notify */
+		String cmd;
+		if (arg == null) {
+			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "');";
+		} else if (arg instanceof String) {
+			/* pass content as configured for the connection
+			 * (see BridgeEncoding) */
+			if (state.bridge == BridgeEncoding.DIRECT) {
+				try {
+					jsConnector.call ("call", new Object [] {state.conn_id, handler, arg});
+					return;
+				} catch (Exception ex) {
+					/* not allowed by this browser */
+					state.bridge = BridgeEncoding.ESCAPED;
+					LogHandling.warn (state, "Direct bridge calls not available (" + ex.getMessage () + "), using escaped bridge encoding");
+				}
+			}
+			if (state.bridge == BridgeEncoding.ESCAPED) {
+				arg = BridgeEncoding.escape (arg.toString ());
+			} else {
+				/* encode string into base64 to support new lines */
+				arg = state.b64Encode (arg.toString ());
+			}
+			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "', \"" + arg.toString () + "\");";
+		} else {
+			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "', " + arg.toString () + ");";
+		}
+
+		/* LogHandling.info (state, "Calling to run: " + cmd);    */
+		state.browser.eval (cmd);
+
+		return;
+	}
+
+} /* end ConnectorCore */
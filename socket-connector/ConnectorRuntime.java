@@ -0,0 +1,204 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.util.*;
+
+/**
+ * @brief I/O engine shared by every ConnectorCore (applet instance,
+ * one per page) loaded in the plugin JVM: the dispatcher thread and
+ * its CommandScheduler, the idle connection reaper, the
+ * TLSContextCache, the SASLHelper, the ConnectionPool and the
+ * ReadBufferPool. Each core keeps its own browser reference (where
+ * its connections are notified), limits and configuration, so
+ * opening more pages adds connections, not caches.
+ *
+ * JS callbacks that may block (a slow handler, a prompt) only stall
+ * their page: each core delivers content on its own DeliveryStage,
+ * and a command that can wait for the user (TLS activation asking to
+ * accept a certificate, see EnableTLSCommand) continues on its own
+ * thread (see SocketState.laneDetached) keeping its connection lane
+ * busy meanwhile, so the dispatcher keeps serving other lanes.
+ *
+ * The runtime is created by the first core (see get) and its
+ * threads, daemon ones, are kept for the JVM lifetime.
+ */
+public class ConnectorRuntime implements Runnable {
+
+	/* the runtime shared by the JVM */
+	private static ConnectorRuntime shared = null;
+
+	/* reaper check interval (milliseconds) */
+	static final long REAP_INTERVAL = 1000;
+
+	CommandScheduler          scheduler = new CommandScheduler ();
+	TLSContextCache           tls       = new TLSContextCache ();
+	SASLHelper                sasl      = new SASLHelper ();
+	ConnectionPool            pool      = new ConnectionPool ();
+	ReadBufferPool            buffers   = new ReadBufferPool ();
+
+	/* JS threads inside any applet (the dispatcher gives them
+	 * way, see run) */
+	Callers                   callers   = new Callers ();
+
+	/* cores registered (started and not stopped) */
+	final List<ConnectorCore> cores     = new ArrayList<ConnectorCore> ();
+
+	Thread                    thread;
+	Thread                    reaper;
+
+	/**
+	 * @brief Returns the runtime shared by the JVM, creating it
+	 * (not started) on first call.
+	 */
+	public static synchronized ConnectorRuntime get () {
+		if (shared == null)
+			shared = new ConnectorRuntime ();
+		return shared;
+	}
+
+	/**
+	 * @brief Registers a started core, starting the runtime
+	 * threads on first registration.
+	 */
+	public synchronized void register (ConnectorCore core) {
+		if (! cores.contains (core))
+			cores.add (core);
+		if (thread != null)
+			return;
+
+		thread = new Thread (this, "JavaSocketConnector-dispatcher");
+		thread.setDaemon (true);
+		thread.start ();
+
+		reaper = new Thread ("JavaSocketConnector-reaper") {
+			public void run () {
+				reap ();
+			}
+		};
+		reaper.setDaemon (true);
+		reaper.setPriority (Thread.MIN_PRIORITY);
+		reaper.start ();
+		return;
+	}
+
+	/**
+	 * @brief Unregisters a stopped core.
+	 */
+	public synchronized void unregister (ConnectorCore core) {
+		cores.remove (core);
+		return;
+	}
+
+	/**
+	 * @brief Returns true if the provided core is registered
+	 * (started and not stopped).
+	 */
+	public synchronized boolean registered (ConnectorCore core) {
+		return cores.contains (core);
+	}
+
+	/**
+	 * @brief Number of cores registered.
+	 */
+	public synchronized int count () {
+		return cores.size ();
+	}
+
+	/**
+	 * @brief Dispatcher loop: runs the commands of all
+	 * connections (see CommandScheduler), each one on behalf of
+	 * the core that created its connection.
+	 */
+	public void run () {
+		SocketState lane     = null;
+		Runnable    detached = null;
+
+		/* set lowest priority */
+		Thread.currentThread ().setPriority (Thread.MIN_PRIORITY);
+
+		while (true) {
+			try {
+				/* notify caller inside */
+				synchronized (callers) {
+					/* check if the caller list if
+					 * empty (no javaScript thread
+					 * is inside the applet) */
+					if (callers.count > 0)
+						callers.wait ();
+				} /* end if */
+				/* give a try to other threads */
+				Thread.yield ();
+
+				/* Wait for the next operation requested
+				 * (by priority, see CommandScheduler) */
+				lane = scheduler.pop ();
+			} catch (Exception ex) {
+				/* do some log error here */
+				continue;
+			} /* end try */
+
+			/* page stopped: its commands are dropped */
+			if (! registered (lane.core)) {
+				lane.core.discard (lane, lane.laneCurrent);
+				lane.core.dropQueued (lane);
+				scheduler.done (lane);
+				continue;
+			}
+
+			/* call to complete command */
+			detached = null;
+			try {
+				lane.laneCurrent.doOperation (lane.core.browser, lane.core);
+			} catch (Exception ex) {
+				/* page gone while running its command, keep
+				 * serving others */
+			} finally {
+				detached          = lane.laneDetached;
+				lane.laneDetached = null;
+				if (detached == null)
+					scheduler.done (lane);
+			}
+
+			/* command continues on its own thread */
+			if (detached != null)
+				detach (lane, detached);
+		}  /* end while */
+	}
+
+	/* runs the rest of the current command of the provided lane,
+	 * finishing the lane turn once done */
+	void detach (final SocketState lane, final Runnable task) {
+		Thread worker = new Thread ("JavaSocketConnector-detached") {
+			public void run () {
+				try {
+					task.run ();
+				} catch (Exception ex) {
+					/* page gone, nothing to report */
+				} finally {
+					scheduler.done (lane);
+				}
+			}
+		};
+		worker.setDaemon (true);
+		worker.start ();
+		return;
+	}
+
+	/* reaper loop: closes idle connections of every core */
+	void reap () {
+		List<ConnectorCore> list = new ArrayList<ConnectorCore> ();
+		while (true) {
+			try {
+				Thread.sleep (REAP_INTERVAL);
+			} catch (InterruptedException ex) {}
+
+			synchronized (this) {
+				list.clear ();
+				list.addAll (cores);
+			}
+			for (ConnectorCore core : list)
+				core.manager.reap ();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+/**
+ * @brief Connector operations traced for profiling: connect, each
+ * write slice, each read, each bridge call (notify), TLS activation
+ * phases and certificate validation, each one with the connection
+ * id and the bytes involved.
+ *
+ * This class does nothing: when the plugin JVM provides Java Flight
+ * Recorder (jdk.jfr), trace points to a JFRTrace which records them
+ * as JFR events while a recording is running. JFRTrace is loaded by
+ * name so the connector keeps loading on JVMs without JFR.
+ *
+ * Each operation is traced with a begin call (before it) that
+ * returns the event in progress (null when not recorded) and an end
+ * call that completes it:
+ *
+ * \code
+ * Object event = ConnectorTrace.trace.beginWrite ();
+ * ...
+ * ConnectorTrace.trace.endWrite (event, state, count);
+ * \endcode
+ */
+public class ConnectorTrace {
+
+	/* trace used by the connector */
+	public static final ConnectorTrace trace = load ();
+
+	static ConnectorTrace load () {
+		try {
+			Class.forName ("jdk.jfr.Event");
+			return (ConnectorTrace) Class.forName ("JFRTrace").getDeclaredConstructor ().newInstance ();
+		} catch (Throwable ex) {
+			/* no JFR in this JVM */
+			return new ConnectorTrace ();
+		}
+	}
+
+	/**
+	 * @brief Returns true if events are being recorded.
+	 */
+	public boolean isRecording () {
+		return false;
+	}
+
+	/* SocketCommand connect */
+	public Object beginConnect () {
+		return null;
+	}
+	public void endConnect (Object event, SocketState state, String host, int port, boolean connected) {
+	}
+
+	/* SendCommand write (one slice) */
+	public Object beginWrite () {
+		return null;
+	}
+	public void endWrite (Object event, SocketState state, long bytes) {
+	}
+
+	/* SocketListener read */
+	public Object beginRead () {
+		return null;
+	}
+	public void endRead (Object event, SocketState state, long bytes) {
+	}
+
+	/* ConnectorCore notify (bridge call) */
+	public Object beginNotify () {
+		return null;
+	}
+	public void endNotify (Object event, SocketState state, String handler, Object arg) {
+	}
+
+	/* EnableTLSCommand phase */
+	public Object beginTLSPhase () {
+		return null;
+	}
+	public void endTLSPhase (Object event, SocketState state, String phase, boolean ok) {
+	}
+
+	/* JSCTrustManager server certificate validation */
+	public Object beginTrust () {
+		return null;
+	}
+	public void endTrust (Object event, SocketState state, String authType, int chainLength, boolean valid, boolean accepted, int trustPolicy) {
+	}
+}
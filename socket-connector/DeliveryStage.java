@@ -0,0 +1,146 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * @brief Delivers content read from connections into the browser
+ * (one stage for each ConnectorCore, so a slow handler only delays
+ * the page it belongs to).
+ *
+ * SocketListener threads only read and queue bytes (InboundQueue);
+ * this stage thread decodes them with the connection decoder, builds
+ * the bridge call and notifies onmessage (and onclose once drained).
+ * Connections take turns, each turn delivering up to CHUNK_SIZE bytes
+ * in a single call, so a connection is never delivered out of order
+ * and reads keep going while the JS engine is busy.
+ *
+ * With parseChannel0 enabled, channel 0 documents completed by a
+ * turn are notified (onchannel0, see Channel0Parser) before it.
+ */
+public class DeliveryStage implements Runnable {
+
+	/* max bytes delivered on each turn (one bridge call) */
+	static final int CHUNK_SIZE = 65536;
+
+	/* connections with content (or close) to deliver */
+	final ArrayDeque<SocketState> ready = new ArrayDeque<SocketState> ();
+
+	/* decode buffers, only used by the stage thread (the bytes
+	 * of an incomplete char are kept by the connection) */
+	final ByteBuffer bytes = ByteBuffer.allocate (CHUNK_SIZE + 16);
+	final CharBuffer chars = CharBuffer.allocate (CHUNK_SIZE + 16);
+
+	/* channel 0 documents parsed on the current turn */
+	final List<String> parsed = new ArrayList<String> ();
+
+	Thread        thread;
+	boolean       running;
+
+	public synchronized void start () {
+		running = true;
+		thread  = new Thread (this, "JavaSocketConnector-delivery");
+		thread.setDaemon (true);
+		thread.start ();
+		return;
+	}
+
+	public synchronized void stop () {
+		running = false;
+		ready.clear ();
+		notifyAll ();
+		return;
+	}
+
+	/**
+	 * @brief Queues the connection for delivery (if it isn't
+	 * already).
+	 */
+	public synchronized void schedule (SocketState state) {
+		if (state.deliveryQueued)
+			return;
+		state.deliveryQueued = true;
+		ready.addLast (state);
+		notifyAll ();
+		return;
+	}
+
+	public void run () {
+		SocketState state;
+
+		while (true) {
+			synchronized (this) {
+				while (running && thread == Thread.currentThread () && ready.isEmpty ()) {
+					try {
+						wait ();
+					} catch (InterruptedException ex) {}
+				}
+				/* stopped (or restarted, served by a
+				 * new thread) */
+				if (! running || thread != Thread.currentThread ())
+					return;
+				state                = ready.pollFirst ();
+				state.deliveryQueued = false;
+			}
+
+			try {
+				deliver (state);
+			} catch (Exception ex) {
+				/* browser failure, keep serving others */
+				try {
+					LogHandling.error (state, "DeliveryStage.run: failed to deliver content, error found was: " + ex.getMessage ());
+				} catch (Exception ex2) {}
+			}
+		}
+	}
+
+	/* deliver a turn of the provided connection */
+	void deliver (SocketState state) {
+		InboundQueue queue = state.inbound;
+		int          count;
+		int          start;
+
+		/* bytes left from previous turn (incomplete char) */
+		bytes.clear ();
+		bytes.put (state.partialBytes, 0, state.partialCount);
+		start = bytes.position ();
+		count = queue.take (bytes.array (), start, CHUNK_SIZE);
+		bytes.position (start + count);
+
+		if (count > 0 && state.channel0 != null && ! state.channel0.disabled) {
+			/* channel 0 documents completed by these bytes
+			 * are delivered before them */
+			parsed.clear ();
+			state.channel0.scan (bytes.array (), start, count, parsed);
+			for (String document : parsed)
+				state.core.notify (state, "onchannel0", document);
+		}
+
+		if (count > 0) {
+			/* decode */
+			bytes.flip ();
+			chars.clear ();
+			state.getDecoder ().decode (bytes, chars, false);
+			state.partialCount = bytes.remaining ();
+			bytes.get (state.partialBytes, 0, state.partialCount);
+			chars.flip ();
+
+			if (chars.hasRemaining ())
+				state.core.notify (state, "onmessage", chars.toString ());
+		}
+
+		/* more content: next turn */
+		if (queue.size () > 0) {
+			schedule (state);
+			return;
+		}
+
+		/* remote close once everything was delivered */
+		if (queue.takeFinish ())
+			state.core.notify (state, "onclose", null);
+		return;
+	}
+}
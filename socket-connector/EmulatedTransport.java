@@ -0,0 +1,402 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * @brief TransportFactory that runs each connection through an
+ * emulated network link (mobile, VPN...) on loopback, to benchmark
+ * framing, write coalescing and TLS under latency on one machine.
+ *
+ * The real connection is created to the requested host and the
+ * connector gets a socket connected to a local relay which forwards
+ * each direction through a Link: content is cut into packets of at
+ * most mtu bytes, each one is serialized at the configured bandwidth
+ * and arrives delay ms later (plus up to +/- jitter ms). A lost
+ * packet arrives stall ms later (retransmission) and, as TCP delivers
+ * in order, holds the packets behind it. Connect waits a round trip.
+ *
+ * Packets are cut at mtu aligned stream offsets (a read ending
+ * before the boundary is sent as a segment of the packet and the
+ * next read completes it) and jitter and losses are drawn from the
+ * seed and the packet index, so the same content gets the same
+ * network conditions on each run, whatever the read timing.
+ * Settings are provided as a spec, for example:
+ *
+ * \code
+ * delay=150,jitter=30,bandwidth=2m,mtu=1400,loss=0.01,stall=400,seed=7
+ * \endcode
+ *
+ * (delay, jitter and stall in milliseconds, bandwidth in bits per
+ * second with optional k/m suffix, 0 means unlimited).
+ */
+public class EmulatedTransport implements TransportFactory {
+
+	/* one way delay, jitter and loss stall (nanoseconds) */
+	long    delay;
+	long    jitter;
+	long    stall;
+	/* bytes per second (0: unlimited) */
+	long    bandwidth;
+	int     mtu      = 1400;
+	double  loss;
+	long    seed;
+	/* bytes in flight on each direction before the sender waits */
+	int     window   = 262144;
+
+	/* local relay and connections created (link seeds) */
+	ServerSocket relay;
+	int          created;
+
+	/* relay connections accepted for another caller (by client
+	 * port), clients waiting for theirs and whether a caller is
+	 * accepting (see accept) */
+	final Map<Integer, Socket> handed    = new HashMap<Integer, Socket> ();
+	final Set<Integer>         waiting   = new HashSet<Integer> ();
+	boolean                    accepting;
+
+	/**
+	 * @brief Creates the transport from the provided spec (see
+	 * class description).
+	 *
+	 * @throws IllegalArgumentException If the spec is not valid.
+	 */
+	public EmulatedTransport (String spec) {
+		for (String item : spec.split (",")) {
+			item = item.trim ();
+			if (item.length () == 0)
+				continue;
+			int index = item.indexOf ('=');
+			if (index == -1)
+				throw new IllegalArgumentException ("Expected name=value, found: " + item);
+			String name  = item.substring (0, index).trim ();
+			String value = item.substring (index + 1).trim ();
+			if (name.equals ("delay"))
+				delay = Long.parseLong (value) * 1000000L;
+			else if (name.equals ("jitter"))
+				jitter = Long.parseLong (value) * 1000000L;
+			else if (name.equals ("stall"))
+				stall = Long.parseLong (value) * 1000000L;
+			else if (name.equals ("bandwidth"))
+				bandwidth = parseRate (value) / 8;
+			else if (name.equals ("mtu"))
+				mtu = Integer.parseInt (value);
+			else if (name.equals ("loss"))
+				loss = Double.parseDouble (value);
+			else if (name.equals ("seed"))
+				seed = Long.parseLong (value);
+			else if (name.equals ("window"))
+				window = Integer.parseInt (value);
+			else
+				throw new IllegalArgumentException ("Unknown network emulation setting: " + name);
+		}
+		if (mtu < 1 || window < mtu || loss < 0 || loss >= 1 || jitter > delay)
+			throw new IllegalArgumentException ("Invalid network emulation settings: " + spec);
+	}
+
+	/* bits per second, with k/m suffix */
+	static long parseRate (String value) {
+		long factor = 1;
+		char last   = Character.toLowerCase (value.charAt (value.length () - 1));
+		if (last == 'k')
+			factor = 1000;
+		else if (last == 'm')
+			factor = 1000000;
+		if (factor != 1)
+			value = value.substring (0, value.length () - 1);
+		return Long.parseLong (value) * factor;
+	}
+
+	public Socket createSocket (String host, int port) throws IOException {
+		Socket upstream = new Socket (host, port);
+		Socket client   = null;
+		Socket accepted = null;
+		int    index;
+
+		try {
+			ServerSocket server;
+			synchronized (this) {
+				if (relay == null)
+					relay = new ServerSocket (0, 50, InetAddress.getByName ("127.0.0.1"));
+				index  = created++;
+				server = relay;
+			}
+
+			/* bind first so the relay side can be matched by
+			 * the client port */
+			client = new Socket ();
+			client.bind (new InetSocketAddress (InetAddress.getByName ("127.0.0.1"), 0));
+			synchronized (this) {
+				waiting.add (Integer.valueOf (client.getLocalPort ()));
+			}
+			try {
+				client.connect (new InetSocketAddress (InetAddress.getByName ("127.0.0.1"), server.getLocalPort ()));
+				accepted = accept (server, client.getLocalPort ());
+			} finally {
+				synchronized (this) {
+					waiting.remove (Integer.valueOf (client.getLocalPort ()));
+				}
+			}
+			upstream.setTcpNoDelay (true);
+			accepted.setTcpNoDelay (true);
+			client.setTcpNoDelay (true);
+
+			/* connect takes a round trip */
+			sleepNanos (2 * delay);
+
+			Link up   = new Link (accepted, upstream, seed * 31 + index * 2, "up");
+			Link down = new Link (upstream, accepted, seed * 31 + index * 2 + 1, "down");
+			up.peer   = down;
+			down.peer = up;
+			up.start ();
+			down.start ();
+		} catch (IOException ex) {
+			close (upstream);
+			close (client);
+			close (accepted);
+			throw ex;
+		}
+		return client;
+	}
+
+	/* relay side of the client connected from the provided port:
+	 * one caller accepts at a time (outside the transport lock),
+	 * handing connections of other callers over */
+	Socket accept (ServerSocket server, int port) throws IOException {
+		Integer key = Integer.valueOf (port);
+		Socket  socket;
+
+		while (true) {
+			synchronized (this) {
+				socket = handed.remove (key);
+				if (socket != null)
+					return socket;
+				if (accepting) {
+					try {
+						wait ();
+					} catch (InterruptedException ex) {
+						throw new InterruptedIOException ();
+					}
+					continue;
+				}
+				accepting = true;
+			}
+
+			socket = null;
+			try {
+				socket = server.accept ();
+			} finally {
+				synchronized (this) {
+					accepting = false;
+					if (socket != null && socket.getPort () != port) {
+						/* skip anything else connecting
+						 * to the relay */
+						if (waiting.contains (Integer.valueOf (socket.getPort ())))
+							handed.put (Integer.valueOf (socket.getPort ()), socket);
+						else
+							close (socket);
+						socket = null;
+					}
+					notifyAll ();
+				}
+			}
+			if (socket != null)
+				return socket;
+		}
+	}
+
+	static void close (Socket socket) {
+		if (socket == null)
+			return;
+		try {
+			socket.close ();
+		} catch (IOException ex) {}
+		return;
+	}
+
+	static void sleepNanos (long nanos) {
+		long end = System.nanoTime () + nanos;
+		while ((nanos = end - System.nanoTime ()) > 0)
+			LockSupport.parkNanos (nanos);
+		return;
+	}
+
+	/* splitmix64: value in [0, 1) for the provided key */
+	static double draw (long key) {
+		long z = key + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	/* a packet in flight */
+	static class Packet {
+		byte [] data;
+		int     size;
+		long    arrival;
+	}
+
+	/**
+	 * @brief One direction of an emulated connection: the reader
+	 * thread (run) cuts what it reads into packets scheduled on the
+	 * link, the writer thread writes each one at its arrival time.
+	 */
+	class Link extends Thread {
+		final Socket              source;
+		final Socket              target;
+		final long                linkSeed;
+		final ArrayDeque<Packet>  flight  = new ArrayDeque<Packet> ();
+		int                       inFlight;
+		boolean                   finished;
+		boolean                   failed;
+
+		/* the other direction: sockets are closed once both
+		 * are done */
+		Link                      peer;
+		boolean                   done;
+
+		/* stream offset (bytes scheduled), time the link is free
+		 * to send and last arrival (packets arrive in order) */
+		long                      offset;
+		long                      linkFree;
+		long                      lastArrival;
+
+		Link (Socket _source, Socket _target, long _seed, String direction) {
+			source   = _source;
+			target   = _target;
+			linkSeed = _seed;
+			setDaemon (true);
+			setName ("JavaSocketConnector-emulator-" + direction);
+		}
+
+		/* reader: packetize (reads never cross an mtu boundary of
+		 * the stream, offset is only updated by this thread) and
+		 * schedule */
+		public void run () {
+			Thread writer = new Thread (getName () + "-writer") {
+				public void run () {
+					deliver ();
+				}
+			};
+			writer.setDaemon (true);
+			writer.start ();
+
+			try {
+				InputStream input = source.getInputStream ();
+				byte []     buffer = new byte [mtu];
+				int         size;
+				while ((size = input.read (buffer, 0, mtu - (int) (offset % mtu))) > 0) {
+					Packet packet = new Packet ();
+					packet.data   = buffer;
+					packet.size   = size;
+					schedule (packet);
+					buffer = new byte [mtu];
+				}
+			} catch (IOException ex) {
+				synchronized (this) {
+					failed = true;
+				}
+			}
+			synchronized (this) {
+				finished = true;
+				notifyAll ();
+			}
+			return;
+		}
+
+		/* compute arrival time and queue, waiting while the
+		 * window is full */
+		synchronized void schedule (Packet packet) throws InterruptedIOException {
+			while (inFlight + packet.size > window && ! failed) {
+				try {
+					wait ();
+				} catch (InterruptedException ex) {
+					throw new InterruptedIOException ();
+				}
+			}
+
+			/* segments of a packet share its conditions */
+			long now  = System.nanoTime ();
+			long key  = linkSeed * 0x2545F4914F6CDD1DL + offset / mtu;
+			long send = Math.max (now, linkFree);
+			if (bandwidth > 0)
+				linkFree = send + packet.size * 1000000000L / bandwidth;
+			else
+				linkFree = send;
+
+			long arrival = linkFree + delay;
+			if (jitter > 0)
+				arrival += (long) ((draw (key) * 2 - 1) * jitter);
+			if (loss > 0 && draw (~key) < loss)
+				arrival += stall;
+			packet.arrival = Math.max (arrival, lastArrival);
+			lastArrival    = packet.arrival;
+			offset        += packet.size;
+
+			flight.addLast (packet);
+			inFlight += packet.size;
+			notifyAll ();
+			return;
+		}
+
+		/* writer: write each packet at its arrival time */
+		void deliver () {
+			Packet packet;
+			try {
+				OutputStream output = target.getOutputStream ();
+				while (true) {
+					synchronized (this) {
+						while (flight.isEmpty () && ! finished) {
+							try {
+								wait ();
+							} catch (InterruptedException ex) {}
+						}
+						packet = flight.peekFirst ();
+						if (packet == null)
+							break;
+					}
+					sleepNanos (packet.arrival - System.nanoTime ());
+					output.write (packet.data, 0, packet.size);
+					output.flush ();
+					synchronized (this) {
+						flight.pollFirst ();
+						inFlight -= packet.size;
+						notifyAll ();
+					}
+				}
+
+				/* source closed: propagate (half close keeps
+				 * the other direction going) */
+				if (failed) {
+					close (source);
+					close (target);
+				} else {
+					target.shutdownOutput ();
+				}
+			} catch (IOException ex) {
+				synchronized (this) {
+					failed = true;
+					notifyAll ();
+				}
+				close (source);
+				close (target);
+			}
+
+			boolean last;
+			synchronized (EmulatedTransport.this) {
+				done = true;
+				last = peer.done;
+			}
+			if (last) {
+				close (source);
+				close (target);
+			}
+			return;
+		}
+	}
+}
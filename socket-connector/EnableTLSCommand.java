@@ -17,81 +17,118 @@ public class EnableTLSCommand implements Command {
 	 */
 	public SocketState state;
 
+	/* TLS activation phase in progress (traced, see
+	 * ConnectorTrace) */
+	String phase;
+	Object phaseEvent;
+
 	/** 
 	 * @brief Implements socket TLS activation.
 	 *
 	 * @param browser The reference to the browser.
 	 */
-	public boolean doOperation (JSObject browser, JavaSocketConnector dispacher) {
+	public boolean doOperation (JSObject browser, ConnectorCore dispacher) {
+
+		/* trust policy 2 may ask the user to accept the server
+		 * certificate (oncerterror): the handshake continues on
+		 * its own thread, not stalling the shared dispatcher
+		 * (the connection commands wait for it). The policy is
+		 * read once, here, and passed to the handshake */
+		LogHandling.info (state, "JavaSocketConnector.EnableTLSCommand.doOperation: getting certTrustPolicy configuration....");
+		int policy;
+		try {
+			policy = _getInteger (state.getMember ("certTrustPolicy"));
+		} catch (Exception ex) {
+			LogHandling.error (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Unable to get certTrustPolicy, error found was: " + ex.getMessage ());
+
+			/* configure ready state: CLOSED */
+			state.listener.stopListener ();
+			state.setMember ("readyState", 2);
+			dispacher.dropQueued (state);
+			dispacher.notify (state, "ontls", false);
+			return false;
+		}
+		if (policy == 2) {
+			final JSObject      _browser   = browser;
+			final ConnectorCore _dispacher = dispacher;
+			state.laneDetached = new Runnable () {
+				public void run () {
+					handshake (_browser, _dispacher, 2);
+				}
+			};
+			return true;
+		}
+		return handshake (browser, dispacher, policy);
+	}
+
+	/** 
+	 * @brief Stops the current listener, does the TLS handshake
+	 * and starts a listener on the TLS connection, notifying
+	 * ontls.
+	 *
+	 * @param trustPolicy The certTrustPolicy configured (read by
+	 * doOperation).
+	 */
+	boolean handshake (JSObject browser, ConnectorCore dispacher, int trustPolicy) {
 
 		/* variables used */
 		SocketListener listener = null;
 		SSLSocket      sslsock  = null;
-		
+
 		LogHandling.info (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Starting TLS handshake..");
 		
 		try {
 			/* terminate current listener */
+			nextPhase ("stop-listener");
 			listener = state.listener;
 			listener.stopListener ();
 
-			/* get default factory */
-			SSLContext          sslContext          = SSLContext.getInstance ("TLSv1");
-			TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance (TrustManagerFactory.getDefaultAlgorithm ());
-			trustManagerFactory.init ((KeyStore) null);
+			/* get default factory (default trust store is
+			 * loaded once, see TLSContextCache) */
+			nextPhase ("context");
+			TrustManagerFactory trustManagerFactory = dispacher.tls.getTrustManagerFactory ();
 
 			/* create our custom trust manager */
 			LogHandling.info (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Preparing trust manager....");
 			JSCTrustManager jsctm     = new JSCTrustManager ();
 			jsctm.state               = state;
 			jsctm.trustManagerFactory = trustManagerFactory;
-
-			/* get certificate trust policy */
-			LogHandling.info (state, "JavaSocketConnector.EnableTLSCommand.doOperation: getting certTrustPolicy configuration....");
-			jsctm.trustPolicy = _getInteger (state.getMember ("certTrustPolicy"));
-
-			/* init ssl context */
-			sslContext.init (null, new TrustManager [] {jsctm}, null);
-
-			LogHandling.info (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Created trust manager.. ..");
-
-			SSLSocketFactory    factory = (SSLSocketFactory) sslContext.getSocketFactory ();
-
+			jsctm.trustPolicy         = trustPolicy;
 
 			/* enable blocking IO on the socket */
+			nextPhase ("socket");
 			Socket socket = state.socket;
 			socket.setSoTimeout (0);
 
-			sslsock = (SSLSocket) factory.createSocket(socket,
-								   (String) state.getMember ("host"),
-								   _getInteger (state.getMember ("port")),
-								   /* autoClose, close this socket if the other socket is closed */
-								   true);
-
-			/* ensure we are using TLS */
-			String [] enabledProtocols = { "TLSv1" };
-			sslsock.setEnabledProtocols (enabledProtocols);
+			sslsock = createSocket (dispacher.tls, jsctm, socket,
+						(String) state.getMember ("host"),
+						_getInteger (state.getMember ("port")));
 
 			/* update socket reference */
 			state.socket = sslsock;
 			state.out    = sslsock.getOutputStream();
 
 			/* start handshake */
+			nextPhase ("handshake");
 			sslsock.startHandshake();
 
 		} catch (SSLException ex) {
+			failPhase ();
 			/* do nothing for now */
 			LogHandling.error (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Server certificate error, error was: " + ex.getMessage ());
 
 			/* configure ready state: CLOSED */
 			state.setMember ("readyState", 2);
+			dispacher.dropQueued (state);
 			dispacher.notify (state, "ontls", false);
 			return false;
 		} catch (Exception ex) {
+			failPhase ();
 			LogHandling.error (state, "JavaSocketConnector.EnableTLSCommand.doOperation: Failed to finish TLS handshake, error found was: " + ex.getMessage ());
 
 			/* configure ready state: CLOSED */
 			state.setMember ("readyState", 2);
+			dispacher.dropQueued (state);
 			dispacher.notify (state, "ontls", false);
 			return false;
 		} /* end if */
@@ -101,6 +138,7 @@ public class EnableTLSCommand implements Command {
 
 		try {
 			/* start listener */
+			nextPhase ("start-listener");
 			listener = new SocketListener ((Socket) sslsock, state, dispacher, state.encoding);
 			listener.disableOnOpenNotify = true;
 
@@ -110,13 +148,16 @@ public class EnableTLSCommand implements Command {
 			/* start listener */
 			listener.start ();
 		} catch (Exception ex) {
+			failPhase ();
 			/* configure ready state: CLOSED */
 			state.setMember ("readyState", 2);
+			dispacher.dropQueued (state);
 			dispacher.notify (state, "ontls", false);
 			LogHandling.error (state, "TLS handshake process failure, failed to start socket listener after handshake");
 			return false;
 		}
 
+		nextPhase (null);
 		LogHandling.info (state, "TLS handshare OK, notify user");
 		
 		/* notify tls status ok*/
@@ -124,6 +165,46 @@ public class EnableTLSCommand implements Command {
 		return true;
 	}
 
+	/** 
+	 * @brief Creates the TLS socket over the provided connected
+	 * socket (closed with it), verifying the peer with the
+	 * provided trust manager.
+	 */
+	static SSLSocket createSocket (TLSContextCache tls, JSCTrustManager jsctm, Socket socket, String host, int port) throws Exception {
+		SSLContext sslContext = SSLContext.getInstance ("TLSv1");
+
+		/* init ssl context */
+		sslContext.init (null, new TrustManager [] {jsctm}, tls.getRandom ());
+		SSLSocketFactory factory = (SSLSocketFactory) sslContext.getSocketFactory ();
+
+		SSLSocket sslsock = (SSLSocket) factory.createSocket (socket, host, port,
+								      /* autoClose, close this socket if the other socket is closed */
+								      true);
+
+		/* ensure we are using TLS */
+		String [] enabledProtocols = { "TLSv1" };
+		sslsock.setEnabledProtocols (enabledProtocols);
+		return sslsock;
+	}
+
+	/* completes the current phase (if any) and starts the next */
+	void nextPhase (String next) {
+		if (phase != null)
+			ConnectorTrace.trace.endTLSPhase (phaseEvent, state, phase, true);
+		phase      = next;
+		phaseEvent = next == null ? null : ConnectorTrace.trace.beginTLSPhase ();
+		return;
+	}
+
+	/* completes the current phase as failed */
+	void failPhase () {
+		if (phase != null)
+			ConnectorTrace.trace.endTLSPhase (phaseEvent, state, phase, false);
+		phase      = null;
+		phaseEvent = null;
+		return;
+	}
+
 	int _getInteger (Object value) {
 		if (value instanceof String)
 			return Integer.parseInt ((String)value);
@@ -0,0 +1,260 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * @brief Bytes read from a connection waiting to be delivered into
+ * the browser by the DeliveryStage, kept off the plugin heap.
+ *
+ * Content is stored in segments, consumed in order: up to memory
+ * bytes in direct buffers taken from a pool shared by all
+ * connections, and past that in regions of a memory mapped temp file
+ * (spill file). The reader (SocketListener) waits once limit bytes
+ * are queued, leaving the rest to TCP flow control.
+ */
+public class InboundQueue {
+
+	/* direct segment size and spill file region size */
+	static final int SEGMENT_SIZE = 65536;
+	static final int REGION_SIZE  = 1024 * 1024;
+
+	/* free direct segments shared by all connections */
+	static final ArrayDeque<ByteBuffer> pool     = new ArrayDeque<ByteBuffer> ();
+	static final int                    POOL_MAX = 64;
+
+	/* a stored piece of content */
+	static class Segment {
+		ByteBuffer buffer;
+		int        read;
+		int        write;
+		boolean    spilled;
+	}
+
+	final ArrayDeque<Segment> segments = new ArrayDeque<Segment> ();
+	int                       size;
+	int                       limit;
+	int                       memory;
+	int                       memoryUsed;
+	boolean                   finished;
+	boolean                   finishNotified;
+	boolean                   discarded;
+
+	/* spill file (created on first use) and its free regions */
+	File                      spillDir;
+	File                      spillFile;
+	RandomAccessFile          spillAccess;
+	final ArrayDeque<Segment> regions  = new ArrayDeque<Segment> ();
+	int                       regionCount;
+
+	/**
+	 * @brief Creates a queue.
+	 *
+	 * @param _limit Bytes that can be queued.
+	 * @param _memory Bytes kept in direct buffers before spilling.
+	 * @param _spillDir Directory of the spill file (null for the
+	 * default temp directory).
+	 */
+	public InboundQueue (int _limit, int _memory, File _spillDir) {
+		limit    = Math.max (_limit, SEGMENT_SIZE);
+		memory   = Math.max (_memory, SEGMENT_SIZE);
+		spillDir = _spillDir;
+	}
+
+	/**
+	 * @brief Queues the provided bytes, waiting while the queue
+	 * is full. Interrupts (stopListener) do not drop the bytes
+	 * already read: the wait only ends with room or discard.
+	 */
+	public synchronized void put (byte [] data, int offset, int length) {
+		boolean interrupted = false;
+		while (size > 0 && size + length > limit && ! discarded) {
+			try {
+				wait ();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread ().interrupt ();
+		if (discarded)
+			return;
+
+		Segment tail = segments.peekLast ();
+		int     count;
+		while (length > 0) {
+			if (tail == null || tail.write == tail.buffer.capacity ()) {
+				tail = newSegment ();
+				segments.addLast (tail);
+			}
+			count = Math.min (length, tail.buffer.capacity () - tail.write);
+			tail.buffer.position (tail.write);
+			tail.buffer.put (data, offset, count);
+			tail.write += count;
+			offset     += count;
+			length     -= count;
+			size       += count;
+		}
+		return;
+	}
+
+	/**
+	 * @brief Takes up to max queued bytes, in order.
+	 *
+	 * @return The amount of bytes copied into data.
+	 */
+	public synchronized int take (byte [] data, int offset, int max) {
+		Segment head;
+		int     count = 0;
+		int     chunk;
+
+		while (count < max && (head = segments.peekFirst ()) != null) {
+			chunk = Math.min (max - count, head.write - head.read);
+			head.buffer.position (head.read);
+			head.buffer.get (data, offset + count, chunk);
+			head.read += chunk;
+			count     += chunk;
+
+			if (head.read < head.write)
+				break;
+			segments.pollFirst ();
+			release (head);
+		}
+		size -= count;
+		notifyAll ();
+		return count;
+	}
+
+	/**
+	 * @brief Bytes queued.
+	 */
+	public synchronized int size () {
+		return size;
+	}
+
+	/**
+	 * @brief Bytes queued on the spill file.
+	 */
+	public synchronized int spilled () {
+		int count = 0;
+		for (Segment segment : segments) {
+			if (segment.spilled)
+				count += segment.write - segment.read;
+		}
+		return count;
+	}
+
+	/**
+	 * @brief Signals no more bytes will be queued (remote close or
+	 * read error): once drained, onclose is delivered.
+	 */
+	public synchronized void finish () {
+		finished = true;
+		return;
+	}
+
+	/**
+	 * @brief Returns true (once) when the queue was finished and
+	 * all its bytes were taken (the spill file is released).
+	 */
+	public synchronized boolean takeFinish () {
+		if (! finished || finishNotified || discarded || size > 0)
+			return false;
+		finishNotified = true;
+		closeSpill ();
+		return true;
+	}
+
+	/**
+	 * @brief Drops queued bytes, releases buffers and the spill
+	 * file and unblocks the reader (the connection was closed).
+	 */
+	public synchronized void discard () {
+		discarded = true;
+		size      = 0;
+		while (! segments.isEmpty ())
+			release (segments.pollFirst ());
+		closeSpill ();
+		notifyAll ();
+		return;
+	}
+
+	/* drop spill regions and remove the file */
+	void closeSpill () {
+		regions.clear ();
+		if (spillAccess == null)
+			return;
+		try {
+			spillAccess.close ();
+		} catch (IOException ex) {}
+		spillAccess = null;
+		spillFile.delete ();
+		return;
+	}
+
+	/* next segment: direct while under memory, spill region
+	 * otherwise */
+	Segment newSegment () {
+		Segment segment;
+		if (memoryUsed + SEGMENT_SIZE > memory) {
+			segment = newRegion ();
+			if (segment != null)
+				return segment;
+		}
+
+		segment = new Segment ();
+		synchronized (pool) {
+			segment.buffer = pool.pollFirst ();
+		}
+		if (segment.buffer == null)
+			segment.buffer = ByteBuffer.allocateDirect (SEGMENT_SIZE);
+		memoryUsed += SEGMENT_SIZE;
+		return segment;
+	}
+
+	/* free spill region or a new one mapped at the end of the
+	 * spill file (null if the file can't be used) */
+	Segment newRegion () {
+		Segment segment = regions.pollFirst ();
+		if (segment != null)
+			return segment;
+		try {
+			if (spillAccess == null) {
+				spillFile   = File.createTempFile ("jsc-inbound", ".spill", spillDir);
+				spillFile.deleteOnExit ();
+				spillAccess = new RandomAccessFile (spillFile, "rw");
+			}
+			segment         = new Segment ();
+			segment.spilled = true;
+			segment.buffer  = spillAccess.getChannel ().map (FileChannel.MapMode.READ_WRITE, (long) regionCount * REGION_SIZE, REGION_SIZE);
+			regionCount++;
+			return segment;
+		} catch (IOException ex) {
+			/* no spill: wait at the memory threshold */
+			limit = memory;
+			return null;
+		}
+	}
+
+	/* return a consumed segment */
+	void release (Segment segment) {
+		segment.read  = 0;
+		segment.write = 0;
+		if (segment.spilled) {
+			if (! discarded)
+				regions.addLast (segment);
+			return;
+		}
+		memoryUsed -= SEGMENT_SIZE;
+		segment.buffer.clear ();
+		synchronized (pool) {
+			if (pool.size () < POOL_MAX)
+				pool.addLast (segment.buffer);
+		}
+		return;
+	}
+}
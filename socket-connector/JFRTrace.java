@@ -0,0 +1,253 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import jdk.jfr.*;
+
+/**
+ * @brief ConnectorTrace recording Java Flight Recorder events (only
+ * loaded when the JVM provides jdk.jfr, see ConnectorTrace.load).
+ *
+ * Nothing is allocated while no recording is running (tracked with a
+ * FlightRecorderListener), and events disabled or below their
+ * threshold in the recording settings are not committed. Events are
+ * in the "JavaSocketConnector" category, named es.aspl.jsc.*.
+ */
+public class JFRTrace extends ConnectorTrace {
+
+	/* a recording is running */
+	static volatile boolean recording;
+
+	@Name ("es.aspl.jsc.Connect")
+	@Label ("Connect")
+	@Category ("JavaSocketConnector")
+	@Description ("TCP connection created by the connector")
+	static class ConnectEvent extends Event {
+		@Label ("Connection Id")
+		String  connId;
+		@Label ("Host")
+		String  host;
+		@Label ("Port")
+		int     port;
+		@Label ("Connected")
+		boolean connected;
+	}
+
+	@Name ("es.aspl.jsc.Write")
+	@Label ("Write")
+	@Category ("JavaSocketConnector")
+	@Description ("Content written on a connection (one send slice)")
+	static class WriteEvent extends Event {
+		@Label ("Connection Id")
+		String connId;
+		@Label ("Bytes Written")
+		@DataAmount
+		long   bytes;
+	}
+
+	@Name ("es.aspl.jsc.Read")
+	@Label ("Read")
+	@Category ("JavaSocketConnector")
+	@Description ("Content read from a connection")
+	static class ReadEvent extends Event {
+		@Label ("Connection Id")
+		String connId;
+		@Label ("Bytes Read")
+		@DataAmount
+		long   bytes;
+		@Label ("Bytes Queued")
+		@Description ("Bytes waiting to be delivered into the browser when the read completed")
+		@DataAmount
+		long   queued;
+	}
+
+	@Name ("es.aspl.jsc.Notify")
+	@Label ("Notify")
+	@Category ("JavaSocketConnector")
+	@Description ("Bridge call into the browser")
+	static class NotifyEvent extends Event {
+		@Label ("Connection Id")
+		String connId;
+		@Label ("Handler")
+		String handler;
+		@Label ("Content Size")
+		@Description ("Characters passed (before bridge encoding)")
+		long   size;
+	}
+
+	@Name ("es.aspl.jsc.TLSPhase")
+	@Label ("TLS Phase")
+	@Category ("JavaSocketConnector")
+	@Description ("TLS activation phase (listener stop, context, socket, handshake, listener start)")
+	static class TLSPhaseEvent extends Event {
+		@Label ("Connection Id")
+		String  connId;
+		@Label ("Phase")
+		String  phase;
+		@Label ("Succeeded")
+		boolean ok;
+	}
+
+	@Name ("es.aspl.jsc.TrustValidation")
+	@Label ("Trust Validation")
+	@Category ("JavaSocketConnector")
+	@Description ("Server certificate validation (including the browser decision when asked)")
+	static class TrustEvent extends Event {
+		@Label ("Connection Id")
+		String  connId;
+		@Label ("Auth Type")
+		String  authType;
+		@Label ("Chain Length")
+		int     chainLength;
+		@Label ("Chain Valid")
+		boolean valid;
+		@Label ("Accepted")
+		boolean accepted;
+		@Label ("Trust Policy")
+		int     trustPolicy;
+	}
+
+	public JFRTrace () {
+		FlightRecorder.addListener (new FlightRecorderListener () {
+			public void recorderInitialized (FlightRecorder recorder) {
+				update (recorder);
+			}
+			public void recordingStateChanged (Recording changed) {
+				update (FlightRecorder.getFlightRecorder ());
+			}
+		});
+	}
+
+	/* check if any recording is running */
+	static void update (FlightRecorder recorder) {
+		boolean running = false;
+		for (Recording item : recorder.getRecordings ()) {
+			if (item.getState () == RecordingState.RUNNING)
+				running = true;
+		}
+		recording = running;
+		return;
+	}
+
+	/* start the provided event if enabled */
+	static Event begin (Event event) {
+		if (! event.isEnabled ())
+			return null;
+		event.begin ();
+		return event;
+	}
+
+	static String connId (SocketState state) {
+		return state == null ? null : state.conn_id;
+	}
+
+	public boolean isRecording () {
+		return recording;
+	}
+
+	public Object beginConnect () {
+		return recording ? begin (new ConnectEvent ()) : null;
+	}
+	public void endConnect (Object event, SocketState state, String host, int port, boolean connected) {
+		if (event == null)
+			return;
+		ConnectEvent item = (ConnectEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId    = connId (state);
+		item.host      = host;
+		item.port      = port;
+		item.connected = connected;
+		item.commit ();
+		return;
+	}
+
+	public Object beginWrite () {
+		return recording ? begin (new WriteEvent ()) : null;
+	}
+	public void endWrite (Object event, SocketState state, long bytes) {
+		if (event == null)
+			return;
+		WriteEvent item = (WriteEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId = connId (state);
+		item.bytes  = bytes;
+		item.commit ();
+		return;
+	}
+
+	public Object beginRead () {
+		return recording ? begin (new ReadEvent ()) : null;
+	}
+	public void endRead (Object event, SocketState state, long bytes) {
+		if (event == null)
+			return;
+		ReadEvent item = (ReadEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId = connId (state);
+		item.bytes  = bytes;
+		if (state != null && state.inbound != null)
+			item.queued = state.inbound.size ();
+		item.commit ();
+		return;
+	}
+
+	public Object beginNotify () {
+		return recording ? begin (new NotifyEvent ()) : null;
+	}
+	public void endNotify (Object event, SocketState state, String handler, Object arg) {
+		if (event == null)
+			return;
+		NotifyEvent item = (NotifyEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId  = connId (state);
+		item.handler = handler;
+		item.size    = arg instanceof String ? ((String) arg).length () : 0;
+		item.commit ();
+		return;
+	}
+
+	public Object beginTLSPhase () {
+		return recording ? begin (new TLSPhaseEvent ()) : null;
+	}
+	public void endTLSPhase (Object event, SocketState state, String phase, boolean ok) {
+		if (event == null)
+			return;
+		TLSPhaseEvent item = (TLSPhaseEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId = connId (state);
+		item.phase  = phase;
+		item.ok     = ok;
+		item.commit ();
+		return;
+	}
+
+	public Object beginTrust () {
+		return recording ? begin (new TrustEvent ()) : null;
+	}
+	public void endTrust (Object event, SocketState state, String authType, int chainLength, boolean valid, boolean accepted, int trustPolicy) {
+		if (event == null)
+			return;
+		TrustEvent item = (TrustEvent) event;
+		item.end ();
+		if (! item.shouldCommit ())
+			return;
+		item.connId      = connId (state);
+		item.authType    = authType;
+		item.chainLength = chainLength;
+		item.valid       = valid;
+		item.accepted    = accepted;
+		item.trustPolicy = trustPolicy;
+		item.commit ();
+		return;
+	}
+}
@@ -40,7 +40,23 @@ public class JSCTrustManager implements X509TrustManager {
 		throw new UnsupportedOperationException();
 	}
 	
+	/* chain validation result (traced, see ConnectorTrace) */
+	boolean chainValid;
+
 	public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+		Object  event    = ConnectorTrace.trace.beginTrust ();
+		boolean accepted = false;
+		chainValid       = false;
+		try {
+			validate (chain, authType);
+			accepted = true;
+		} finally {
+			ConnectorTrace.trace.endTrust (event, state, authType, chain == null ? 0 : chain.length, chainValid, accepted, trustPolicy);
+		}
+		return;
+	}
+
+	void validate (X509Certificate[] chain, String authType) throws CertificateException {
 		for (X509Certificate cert : chain) {
 			LogHandling.info (state, "JSCTrustManager.checkServerTrusted: Received notification to accept or not server certificate: authType=" + authType);
 
@@ -50,6 +66,7 @@ public class JSCTrustManager implements X509TrustManager {
 
 				/* do chain certificate validation */
 				manager.checkServerTrusted (chain, authType);
+				chainValid = true;
 
 				LogHandling.info (state, "JSCTrustManager.checkServerTrusted: Certificate status: OK");
 			} catch (Exception ex) {
@@ -9,16 +9,11 @@ import netscape.javascript.*;
 import java.net.*;
 import java.io.*;
 
-public class JavaSocketConnector extends JApplet implements Runnable {
+public class JavaSocketConnector extends JApplet {
 
-	/* A reference to the current browser (tab) opening the
-	 * component */
-	JSObject      browser      = null; /* browser */
-	BlockingQueue commandQueue = null; /* command queue */
-
-	/* list of callers that are inside the applet */
-	Callers       callers      = null;
-	boolean       running;
+	/* connector implementation, bound to the browser (tab)
+	 * opening the component */
+	ConnectorCore core = null;
 
 	/**
 	 * Public initialization. Get a reference to the browser
@@ -26,10 +21,69 @@ public class JavaSocketConnector extends JApplet implements Runnable {
 	 */
 	public void init() {
 		/* reference to the browser */
-		browser = JSObject.getWindow (this);
-
-		/* initialize callers */
-		callers = new Callers ();
+		core = new ConnectorCore (JSObject.getWindow (this));
+
+		/* check if traffic capture was requested (debugging
+		 * only: files hold the traffic in clear, so enable it on
+		 * trusted pages only), keeping the last captureFiles
+		 * files of captureSize bytes */
+		String value = getParameter ("captureDir");
+		if (value != null)
+			core.captureDir = new File (value);
+		value = getParameter ("captureSize");
+		if (value != null)
+			core.captureSize = Integer.parseInt (value);
+		value = getParameter ("captureFiles");
+		if (value != null)
+			core.captureFiles = Integer.parseInt (value);
+
+		/* load TLS classes and material in background */
+		value = getParameter ("tlsPrewarm");
+		if (value != null)
+			core.tlsPrewarm = value.equals ("true");
+
+		/* connection limits and idle timeout (seconds) */
+		value = getParameter ("maxConnections");
+		if (value != null)
+			core.manager.maxConnections = Integer.parseInt (value);
+		value = getParameter ("maxMemory");
+		if (value != null)
+			core.manager.maxMemory = Long.parseLong (value);
+		value = getParameter ("idleTimeout");
+		if (value != null)
+			core.manager.idleTimeout = Long.parseLong (value) * 1000;
+		value = getParameter ("shutdownTimeout");
+		if (value != null)
+			core.manager.shutdownTimeout = Long.parseLong (value);
+
+		/* bytes read a connection may queue while the browser
+		 * is busy, and how many stay in memory before spilling
+		 * into a temp file (named by InboundQueue, removed once
+		 * consumed). spillDir must be an existing directory
+		 * (otherwise the system temp dir is used) and, as spill
+		 * files hold traffic in clear, be set by trusted pages
+		 * only */
+		value = getParameter ("inboundLimit");
+		if (value != null)
+			core.inboundLimit = Integer.parseInt (value);
+		value = getParameter ("inboundMemory");
+		if (value != null)
+			core.inboundMemory = Integer.parseInt (value);
+		value = getParameter ("spillDir");
+		if (value != null && new File (value).isDirectory ())
+			core.spillDir = new File (value);
+
+		/* largest read buffer (bytes) a connection grows to
+		 * while reads fill it */
+		value = getParameter ("readBufferMax");
+		if (value != null)
+			core.readBufferMax = Integer.parseInt (value);
+
+		/* run connections through an emulated network link
+		 * (testing, see EmulatedTransport) */
+		value = getParameter ("networkEmulation");
+		if (value != null)
+			core.transport = new EmulatedTransport (value);
 
 		return;
 	}
@@ -38,219 +92,104 @@ public class JavaSocketConnector extends JApplet implements Runnable {
 	 * @brief Stop the applet.
 	 */
 	public void stop () {
-		running = false;
+		core.stop ();
 	}
 	public void destroy () {
 		stop ();
 	}
 
 	/** 
-	 * @brief Main loop that waits for commands to be implemented
-	 * under this thread because it has permission.
+	 * @brief Starts the thread that waits for commands to be
+	 * implemented under it because it has permission.
 	 */
 	public void start () {
-		Thread th = new Thread (this);
-		th.start();
-	}
-
-	public void run () {
-
-		/* Notify the browser that the component was
-		 * loaded. */
-		JSObject member = (JSObject) browser.getMember ("JavaSocketConnector");
-		member.setMember ("isReady", true);
-
-		/* create commandQueue */
-		commandQueue = new BlockingQueue ();
-
-		running = true;
-		Command cmd = null;
-
-		/* set lowest priority */
-		Thread.currentThread ().setPriority (Thread.MIN_PRIORITY);
-
-		while (running){
-			try {
-				/* notify caller inside */
-				synchronized (callers) {
-					/* check if the caller list if
-					 * empty (no javaScript thread
-					 * is inside the applet) */
-					if (callers.count > 0) 
-						callers.wait ();
-				} /* end if */
-				/* give a try to other threads */
-				Thread.yield ();
-
-				/* Wait for the next operation requested */
-				cmd = (Command) commandQueue.pop ();
-			} catch (Exception ex) {
-				/* do some log error here */
-				continue;
-			} /* end try */
-
-			/* call to complete command */
-			cmd.doOperation (browser, this);
-		}  /* end while */
-		return;
+		core.start ();
 	}
 
 	/** 
-	 * @brief Socket connect to the host and port provided. Once
-	 * the connection is created, it is notified on the provided
-	 * handler.
-	 * 
-	 * @param host The host to connect to.
-	 * @param port The port to connect to.
-	 * @param encoding The connection encoding..
-	 * @param conn_id The connection id identifer of the caller object.
+	 * @brief Socket connect to the host and port provided. See
+	 * ConnectorCore.connect.
 	 */
 	public SocketState connect (String host, int port, String encoding, String conn_id) {
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count++;
-		}
-
-		/* create the socket command */
-		SocketState   state = new SocketState ();
-		SocketCommand cmd   = new SocketCommand ();
-		cmd.host        = host;
-		cmd.port        = port;
-		state.conn_id   = conn_id;
-		state.encoding  = encoding;
-		state.browser   = browser;
-		/* System.out.println ("Received connection id: " + conn_id); */
-		cmd.state     = state;
-
-		/* queue the command */
-		commandQueue.push (cmd);
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count--;
-			callers.notify ();
-		}
-		
-		return state;
+		return core.connect (host, port, encoding, conn_id);
+	}
+	public SocketState connect (String host, int port, String encoding, String conn_id, int priority) {
+		return core.connect (host, port, encoding, conn_id, priority);
 	}
 
 	/** 
-	 * @brief Allows to send the provided string over the provided
-	 * out stream (associated to a particular socket).
-	 *
-	 * @param content The content to be sent.
-	 * @param length The amount of data to be written.
-	 * @param out The output stream object to write on.
+	 * @brief Sends the provided content over the provided
+	 * connection. See ConnectorCore.send.
 	 */
 	public boolean send (String content, int length, SocketState state){
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count++;
-		}
-
-		/* queue a send operation */
-		SendCommand sendCmd = new SendCommand ();
-		try {
-			sendCmd.content = content.getBytes (state.encoding);
-		} catch (Exception ex) {
-			LogHandling.error (state, "Unsupported enconding type: " + ex.getMessage()); 
-			return false;
-		}
-		sendCmd.length  = sendCmd.content.length;
-		sendCmd.output  = state.out;
-		sendCmd.state   = state;
-
-		/* queue command */
-		commandQueue.push (sendCmd);
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count--;
-			callers.notify ();
-		}
-
-		return true;
+		return core.send (content, length, state);
+	}
+	public boolean send (String content, int length, SocketState state, int priority){
+		return core.send (content, length, state, priority);
 	}
 
 	/** 
-	 * @brief Activates TLS support on the provided socket object
-	 * (caller reference).
+	 * @brief Activates TLS support on the provided connection. See
+	 * ConnectorCore.enableTLS.
 	 */
 	public boolean enableTLS (SocketState state) {
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count++;
-		}
-
-		/* call to create command */
-		EnableTLSCommand cmd = new EnableTLSCommand ();
-		cmd.state            = state;
-
-		commandQueue.push (cmd);
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count--;
-			callers.notify ();
-		}
-
-		return true;
+		return core.enableTLS (state);
+	}
+	public boolean enableTLS (SocketState state, int priority) {
+		return core.enableTLS (state, priority);
 	}
 
 	/** 
-	 * @brief Closes the socket by closing internal socket, output
-	 * stream and input stream. The method also changes the
-	 * readyState of the socket and fires the onclose event.
-	 *
-	 * @param caller The caller and at the same time the socket.
+	 * @brief Closes the provided connection. See
+	 * ConnectorCore.close.
 	 */
 	public void close (SocketState state) {
+		core.close (state);
+		return;
+	}
 
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count++;
-		}
-
-		/* close all items */
-		state.listener.close ();
-		try {state.out.close ();} catch (Exception ex) {}
-
-		/* now change ready state */
-		state.setMember ("readyState", 2); 
-
-		/* fire onclose event */
-		notify (state, "onclose", null);
-
-		/* notify caller inside */
-		synchronized (callers) {
-			callers.count--;
-			callers.notify ();
-		}
-		
+	/** 
+	 * @brief Configures how many connections are kept established
+	 * for the provided peer (0 to stop) while the applet runs.
+	 * See ConnectionPool.configure.
+	 */
+	public void pool (String host, int port, int size) {
+		core.runtime.pool.configure (core, host, port, size);
 		return;
 	}
 
-	public void notify (SocketState state, String handler, Object arg) {
-		/* LogHandling.info (state, "Doing handler notification for: " + handler);   */
+	/** 
+	 * @brief Starts a client SASL exchange (SCRAM-SHA-1,
+	 * SCRAM-SHA-256 or DIGEST-MD5) computed by the applet. See
+	 * SASLHelper.start.
+	 */
+	public SASLHelper.Session saslStart (String mech, String authcid, String password, String authzid, String serverName) {
+		return core.runtime.sasl.start (mech, authcid, password, authzid, serverName);
+	}
 
-		/* call to notify */
-		String cmd;
-		if (arg == null) {
-			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "');";
-		} else if (arg instanceof String) {
-			/* encode string into base64 to support new lines */
-			arg = state.b64Encode (arg.toString ());
-			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "', \"" + arg.toString () + "\");";
-		} else {
-			cmd = "JavaSocketConnector.call (" + state.conn_id + ", '" + handler + "', " + arg.toString () + ");";
-		}
+	/** 
+	 * @brief Takes the server blob (base64, null if none) and
+	 * returns the next client blob ("" when there is nothing to
+	 * send, null on failure). See SASLHelper.step.
+	 */
+	public String saslStep (SASLHelper.Session session, String blob) {
+		return core.runtime.sasl.step (session, blob);
+	}
 
-		/* LogHandling.info (state, "Calling to run: " + cmd);    */
-		state.browser.eval (cmd);
+	/** 
+	 * @brief Error found on the provided SASL session (null if
+	 * none).
+	 */
+	public String saslError (SASLHelper.Session session) {
+		return session.error;
+	}
 
-		return;
+	/** 
+	 * @brief Returns true when the server was authenticated (final
+	 * step verified).
+	 */
+	public boolean saslComplete (SASLHelper.Session session) {
+		return session.complete;
 	}
 
 } /* end JavaSocketConnector */
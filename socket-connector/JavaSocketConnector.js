@@ -22,6 +22,9 @@ if (typeof console == "undefined") {
  * @param params Associative array that includes all parameters expected by the method. Expected values are:
  * @param params.host {String} The host to connect to (ip or hostname).
  * @param params.port {String} The TCP port to connect to.
+ * @param params.bridgeEncoding {String} ? How content received is passed from the applet: "base64" (default), "escaped" or "direct".
+ * @param params.priority {Number} ? Priority used to queue the connect operation (see JavaSocketConnector.PRIORITY_NORMAL).
+ * @param params.parseChannel0 {Boolean} ? Parse BEEP channel 0 documents in the applet, notified at onchannel0 (default false).
  *
  * @return Returns a reference to a JavaSocketConnector instance.
  */
@@ -46,6 +49,25 @@ function JavaSocketConnector (params) {
     if (typeof this.encoding == "undefined")
 	this.encoding = document.charset;
 
+    /**
+     * @brief How content received is passed from the applet:
+     * "base64" (default), "escaped" (JS string literal, no decode
+     * step) or "direct" (Java string passed as is, when the browser
+     * allows it, otherwise "escaped" is used). Any other value
+     * selects "base64", as the applet does (BridgeEncoding.parse).
+     */
+    this.bridgeEncoding = params.bridgeEncoding;
+    if (this.bridgeEncoding != "escaped" && this.bridgeEncoding != "direct")
+	this.bridgeEncoding = "base64";
+
+    /**
+     * @brief When true, the applet follows BEEP frames read and
+     * notifies onchannel0 with each channel 0 document parsed
+     * (compact form, see Channel0Parser.java) before the content
+     * carrying it is notified at onmessage.
+     */
+    this.parseChannel0 = params.parseChannel0 == true;
+
     /**
      * @brief Connection status. By default it is set to CONNECTING =
      * 0. The list of readyState are:
@@ -76,7 +98,10 @@ function JavaSocketConnector (params) {
     JavaSocketConnector.connections[this.id] = this;
 
     /* do a socket connection */
-    this.state = document.applets.JavaSocketConnector.connect (params.host, params.port, this.encoding, String(this.id));
+    if (typeof params.priority == "undefined")
+	this.state = document.applets.JavaSocketConnector.connect (params.host, params.port, this.encoding, String(this.id));
+    else
+	this.state = document.applets.JavaSocketConnector.connect (params.host, params.port, this.encoding, String(this.id), params.priority);
 }
 
 /**
@@ -91,45 +116,130 @@ JavaSocketConnector.nextId = 1;
  */
 JavaSocketConnector.connections = {};
 
+/**
+ * @brief Priority for latency sensitive operations (small
+ * interactive frames). Higher priority operations are served first
+ * by the applet without starving lower ones.
+ */
+JavaSocketConnector.PRIORITY_HIGH = 0;
+
+/**
+ * @brief Default priority.
+ */
+JavaSocketConnector.PRIORITY_NORMAL = 1;
+
+/**
+ * @brief Priority for bulk transfers.
+ */
+JavaSocketConnector.PRIORITY_BULK = 2;
+
 /**
  * @brief Global variable used to signal that the applet was loaded
  * and started.
  */
 JavaSocketConnector.isReady = false;
 
+/**
+ * @brief Keeps size connections to host:port established in
+ * background so connect can take one instead of waiting for the TCP
+ * handshake (TLS, negotiated by BEEP once greetings are exchanged,
+ * is still done on enableTLS). Pass size 0 to stop.
+ */
+JavaSocketConnector.pool = function (host, port, size) {
+    document.applets.JavaSocketConnector.pool (host, port, size);
+    return;
+};
+
+/**
+ * @brief Starts a client SASL exchange computed by the applet
+ * (SCRAM-SHA-1, SCRAM-SHA-256 or DIGEST-MD5), keeping PBKDF2/HMAC
+ * and MD5 work out of the javascript engine.
+ *
+ * @return A session reference to be used with saslStep, saslError
+ * and saslComplete or null if the mechanism is not supported.
+ */
+JavaSocketConnector.saslStart = function (mech, authenticationId, password, authorizationId, serverName) {
+    return document.applets.JavaSocketConnector.saslStart (mech, authenticationId, password,
+							   authorizationId ? authorizationId : null,
+							   serverName ? serverName : null);
+};
+
+/**
+ * @brief Provides the blob received from the server (base64, null
+ * if none) and returns the next blob to send ("" if there is
+ * nothing to send) or null on failure (see saslError).
+ */
+JavaSocketConnector.saslStep = function (session, blob) {
+    var result = document.applets.JavaSocketConnector.saslStep (session, blob ? blob : null);
+    if (result == null)
+	return null;
+    return String (result);
+};
+
+/**
+ * @brief Returns the error found on the SASL session (null if none).
+ */
+JavaSocketConnector.saslError = function (session) {
+    var result = document.applets.JavaSocketConnector.saslError (session);
+    if (result == null)
+	return null;
+    return String (result);
+};
+
+/**
+ * @brief Returns true when the server final step was verified.
+ */
+JavaSocketConnector.saslComplete = function (session) {
+    return document.applets.JavaSocketConnector.saslComplete (session) == true;
+};
+
 /**
  * @brief Allows to send content over the provided socket object.
  *
  * @param content The content to be sent.
  * @param length The amount of data to be sent from the content.
+ * @param priority ? The priority for this send (JavaSocketConnector.PRIORITY_HIGH, PRIORITY_NORMAL (default) or PRIORITY_BULK).
+ *
+ * Content can be sent while the connection is still being created
+ * (readyState == 0): it is queued and written once the connection is
+ * done (and dropped if it fails).
  *
  * @return true in the case the send operation was initiated,
  * otherwise false is returned.
  */
-JavaSocketConnector.prototype.send = function (content, length) {
-    /* check socket readyState */
-    if (this.readyState != 1) {
-	this.onlog ("error", "Unable to send content, socket readyState is: " + readyState);
+JavaSocketConnector.prototype.send = function (content, length, priority) {
+    /* check socket readyState (CONNECTING or OPEN) */
+    if (this.readyState == 2) {
+	this.onlog ("error", "Unable to send content, socket readyState is: " + this.readyState);
 	return false;
     }
 
     /* now send content */
-    return document.applets.JavaSocketConnector.send (content, length, this.state);
+    if (typeof priority == "undefined")
+	return document.applets.JavaSocketConnector.send (content, length, this.state);
+    return document.applets.JavaSocketConnector.send (content, length, this.state, priority);
 };
 
 /**
  * @brief Function used to enable TLS protection on the provided socket.
  * See also certTrustPolicy which allows configuring what to do in the case of certificate error.
+ *
+ * As with send, it can be requested while the connection is being
+ * created: sends issued after it are written once TLS is ready.
+ *
+ * @param priority ? The priority for the TLS activation (see JavaSocketConnector.prototype.send).
  */
-JavaSocketConnector.prototype.enableTLS = function () {
-    /* check socket readyState */
-    if (this.readyState != 1) {
-	this.onlog ("error", "Unable to enable TLS, socket readyState is: " + readyState);
+JavaSocketConnector.prototype.enableTLS = function (priority) {
+    /* check socket readyState (CONNECTING or OPEN) */
+    if (this.readyState == 2) {
+	this.onlog ("error", "Unable to enable TLS, socket readyState is: " + this.readyState);
 	return false;
     }
 
     /* now send content */
-    return document.applets.JavaSocketConnector.enableTLS (this.state);
+    if (typeof priority == "undefined")
+	return document.applets.JavaSocketConnector.enableTLS (this.state);
+    return document.applets.JavaSocketConnector.enableTLS (this.state, priority);
 };
 
 /**
@@ -256,9 +366,20 @@ JavaSocketConnector.getMember = function (conn_id, member, value) {
  */
 JavaSocketConnector.call = function (conn_id, method, value, value2, value3) {
 
+    var conn = JavaSocketConnector.connections[conn_id];
+    if (! conn) {
+	Vortex.error ("JavaSocketConnection.call: unable to notify method " + method + ", over connection id: " + conn_id + ", conn reference was not found");
+	return null;
+    }
+
     /* code base64 content for string received */
-    if (method == "onmessage") {
-	value =	VortexBase64.decode (value);
+    if (method == "onmessage" || method == "onchannel0") {
+	/* escaped and direct bridge encodings need no decoding
+	 * (direct ones are java strings) */
+	if (conn.bridgeEncoding == "base64")
+	    value = VortexBase64.decode (value);
+	else
+	    value = String (value);
     } else if (method == "onlog") {
 	value2 = VortexBase64.decode (value2);
     } else if (method == "oncerterror") {
@@ -267,12 +388,6 @@ JavaSocketConnector.call = function (conn_id, method, value, value2, value3) {
 	value3 = VortexBase64.decode (value3);
     }
 
-    var conn = JavaSocketConnector.connections[conn_id];
-    if (! conn) {
-	Vortex.error ("JavaSocketConnection.call: unable to notify method " + method + ", over connection id: " + conn_id + ", conn reference was not found");
-	return null;
-    }
-
     /* call javascript method on the right connection */
     return conn[method] (value, value2, value3);
 };
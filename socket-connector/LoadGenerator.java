@@ -0,0 +1,373 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.lang.management.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * @brief Load tool that drives simulated connections through
+ * ConnectorCore (connect, send, enableTLS and close) using a
+ * StubBrowser, by default against an embedded StandInServer, and
+ * reports throughput and latency percentiles for each operation.
+ *
+ * Each connection connects, optionally enables TLS, waits for the
+ * greeting and then sends frames one after another, waiting for the
+ * echo of each one (send latency is the echo round trip), and closes.
+ *
+ * Usage: java LoadGenerator [-c connections] [-f frames] [-s size]
+ *                           [-tls] [-prewarm] [-pipeline] [-v] [-bulk n] [-tabs n]
+ *                           [-emulate spec] [-pool n] [-host host -port port]
+ *
+ * -v prints connector logs (onlog) to stderr. -bulk n makes the
+ * first n connections send with PRIORITY_BULK (reported as
+ * send-bulk) and the rest with PRIORITY_HIGH. -prewarm enables TLS
+ * prewarming on start (see TLSContextCache). -pipeline queues TLS
+ * activation and the first frame right after connect, without
+ * waiting for onopen. setup reports the time from connect to the
+ * first echo in both modes. -tabs n spreads connections over n
+ * ConnectorCore instances (pages) sharing the ConnectorRuntime.
+ * -emulate runs connections through an emulated network link (see
+ * EmulatedTransport for the spec, e.g. delay=100,bandwidth=2m).
+ * -pool n keeps n connections established in the ConnectionPool
+ * and waits for them before starting, so the first n connects take
+ * a warm one.
+ */
+public class LoadGenerator implements StubBrowser.Handler {
+
+	/* simulated connections by id */
+	final Map<String, SimConn> conns = Collections.synchronizedMap (new HashMap<String, SimConn> ());
+
+	/* latency samples (nanoseconds) for each operation */
+	final Map<String, List<Long>> samples = new TreeMap<String, List<Long>> ();
+
+	/* one core and browser for each simulated page */
+	final List<ConnectorCore> cores    = new ArrayList<ConnectorCore> ();
+	final List<StubBrowser>   browsers = new ArrayList<StubBrowser> ();
+	int           tabs     = 1;
+	String        host     = "127.0.0.1";
+	int           port     = 0;
+	boolean       tls      = false;
+	int           count    = 10;
+	int           frames   = 100;
+	int           size     = 1024;
+	int           errors   = 0;
+	long          timeout  = 30000;
+	boolean       verbose  = false;
+	int           bulk     = 0;
+	boolean       prewarm  = false;
+	boolean       pipeline = false;
+	String        emulate  = null;
+	int           pool     = 0;
+
+	/**
+	 * @brief State of one simulated connection.
+	 */
+	static class SimConn {
+		String        id;
+		ConnectorCore core;
+		StubBrowser   browser;
+		SocketState   state;
+		int         priority = CommandScheduler.PRIORITY_NORMAL;
+		boolean     opened;
+		boolean     closed;
+		Boolean     tlsStatus;
+		long        received;
+	}
+
+	public Object call (String conn_id, String method, String [] args) {
+		SimConn conn = conns.get (conn_id);
+		if (conn == null)
+			return null;
+		synchronized (conn) {
+			if (method.equals ("onopen"))
+				conn.opened = true;
+			else if (method.equals ("onmessage"))
+				conn.received += Base64Coder.decode (args[0]).length;
+			else if (method.equals ("ontls"))
+				conn.tlsStatus = Boolean.valueOf (args[0]);
+			else if (method.equals ("onclose"))
+				conn.closed = true;
+			else if (method.equals ("onlog") && verbose)
+				System.err.println ("conn " + conn_id + ": " + args[0] + ": " + new String (Base64Coder.decode (args[1])));
+			conn.notifyAll ();
+		}
+		return Boolean.TRUE;
+	}
+
+	/* run the operation flow for one connection */
+	void drive (SimConn conn, String payload, int greeting) throws Exception {
+		long start;
+
+		/* connect */
+		conn.browser.setConnMember (conn.id, "host", host);
+		conn.browser.setConnMember (conn.id, "port", Integer.valueOf (port));
+		conn.browser.setConnMember (conn.id, "certTrustPolicy", Integer.valueOf (3));
+		long setup = System.nanoTime ();
+		start = setup;
+		conn.state = conn.core.connect (host, port, "UTF-8", conn.id);
+		if (pipeline) {
+			/* queued until connected */
+			if (tls)
+				conn.core.enableTLS (conn.state);
+			if (frames > 0)
+				conn.core.send (payload, size, conn.state, conn.priority);
+		}
+		synchronized (conn) {
+			while (! conn.opened)
+				waitOn (conn);
+		}
+		sample ("connect", start);
+		if (! Integer.valueOf (1).equals (conn.browser.getConnMember (conn.id, "readyState")))
+			throw new Exception ("connect failed: " + conn.browser.getConnMember (conn.id, "connectError"));
+
+		/* TLS */
+		if (tls) {
+			start = System.nanoTime ();
+			if (! pipeline)
+				conn.core.enableTLS (conn.state);
+			synchronized (conn) {
+				while (conn.tlsStatus == null)
+					waitOn (conn);
+			}
+			sample ("enableTLS", start);
+			if (! conn.tlsStatus.booleanValue ())
+				throw new Exception ("TLS handshake failed");
+		}
+
+		/* greeting */
+		synchronized (conn) {
+			while (conn.received < greeting)
+				waitOn (conn);
+		}
+
+		/* frames, one echo at a time */
+		long expected = greeting;
+		for (int i = 0; i < frames; i++) {
+			expected += size;
+			start     = System.nanoTime ();
+			if (i > 0 || ! pipeline)
+				conn.core.send (payload, size, conn.state, conn.priority);
+			synchronized (conn) {
+				while (conn.received < expected)
+					waitOn (conn);
+			}
+			if (i > 0 || ! pipeline)
+				sample (conn.priority == CommandScheduler.PRIORITY_BULK ? "send-bulk" : "send", start);
+			if (i == 0)
+				sample ("setup", setup);
+		}
+
+		/* close */
+		start = System.nanoTime ();
+		conn.core.close (conn.state);
+		sample ("close", start);
+		return;
+	}
+
+	void waitOn (SimConn conn) throws Exception {
+		long before = System.currentTimeMillis ();
+		conn.wait (timeout);
+		if (System.currentTimeMillis () - before >= timeout)
+			throw new Exception ("timeout waiting connection " + conn.id);
+	}
+
+	void sample (String operation, long start) {
+		long elapsed = System.nanoTime () - start;
+		synchronized (samples) {
+			List<Long> list = samples.get (operation);
+			if (list == null) {
+				list = new ArrayList<Long> ();
+				samples.put (operation, list);
+			}
+			list.add (Long.valueOf (elapsed));
+		}
+		return;
+	}
+
+	void run () throws Exception {
+		StandInServer server = null;
+		if (port == 0) {
+			server = new StandInServer (0, tls);
+			server.start ();
+			port = server.getPort ();
+		}
+
+		for (int i = 0; i < tabs; i++) {
+			StubBrowser   browser = new StubBrowser (this);
+			ConnectorCore core    = new ConnectorCore (browser);
+			core.tlsPrewarm = prewarm;
+			if (emulate != null)
+				core.transport = new EmulatedTransport (emulate);
+			core.start ();
+			browsers.add (browser);
+			cores.add (core);
+		}
+		ConnectorRuntime runtime = ConnectorRuntime.get ();
+
+		/* build payload (ASCII so characters == bytes) */
+		StringBuilder builder = new StringBuilder (size);
+		for (int i = 0; i < size; i++)
+			builder.append ((char) ('a' + (i % 26)));
+		final String payload  = builder.toString ();
+		final int    greeting = StandInServer.GREETING.length ();
+
+		/* wait dispatcher to be ready */
+		for (StubBrowser browser : browsers) {
+			while (browser.globals.get ("isReady") == null)
+				Thread.sleep (10);
+		}
+		/* with prewarm, let it finish as it would while the
+		 * user is reading the login page */
+		if (prewarm)
+			runtime.tls.getTrustManagerFactory ();
+		if (pool > 0)
+			fillPool (runtime.pool, cores.get (0));
+		long allocStart = allocated (runtime.thread);
+
+		List<Thread> threads = new ArrayList<Thread> ();
+		long         started = System.nanoTime ();
+		for (int i = 1; i <= count; i++) {
+			final SimConn conn = new SimConn ();
+			conn.id      = String.valueOf (i);
+			conn.core    = cores.get (i % tabs);
+			conn.browser = browsers.get (i % tabs);
+			if (bulk > 0)
+				conn.priority = i <= bulk ? CommandScheduler.PRIORITY_BULK : CommandScheduler.PRIORITY_HIGH;
+			conns.put (conn.id, conn);
+			Thread thread = new Thread () {
+				public void run () {
+					try {
+						drive (conn, payload, greeting);
+					} catch (Exception ex) {
+						System.err.println ("conn " + conn.id + ": " + ex.getMessage ());
+						synchronized (LoadGenerator.this) {
+							errors++;
+						}
+					}
+				}
+			};
+			threads.add (thread);
+			thread.start ();
+		}
+		for (Thread thread : threads)
+			thread.join ();
+		long elapsed    = System.nanoTime () - started;
+		long allocTotal = allocated (runtime.thread) - allocStart;
+
+		report (elapsed, allocTotal);
+		for (ConnectorCore core : cores)
+			core.stop ();
+		return;
+	}
+
+	/* configure the pool and wait for it to be filled */
+	void fillPool (ConnectionPool connectionPool, ConnectorCore core) throws Exception {
+		int  wanted   = Math.min (pool, ConnectionPool.MAX_SIZE);
+		long deadline = System.currentTimeMillis () + timeout;
+		connectionPool.configure (core, host, port, wanted);
+		while (connectionPool.ready (host, port) < wanted) {
+			if (System.currentTimeMillis () > deadline)
+				throw new Exception ("timeout filling the connection pool");
+			Thread.sleep (10);
+		}
+		return;
+	}
+
+	void report (long elapsed, long allocTotal) {
+		double seconds = elapsed / 1e9;
+		long frameCount  = 0;
+		if (samples.get ("send") != null)
+			frameCount += samples.get ("send").size ();
+		if (samples.get ("send-bulk") != null)
+			frameCount += samples.get ("send-bulk").size ();
+
+		System.out.println ("LoadGenerator: " + count + " connections, " + frames + " frames of " + size + " bytes"
+				    + (tls ? ", TLS" : "") + ", " + errors + " errors, " + String.format ("%.2f", seconds) + " s");
+		/* connector threads other than listeners (shared ones and
+		 * a delivery stage per page) */
+		int engine = 0;
+		for (Thread thread : Thread.getAllStackTraces ().keySet ()) {
+			if (thread.getName ().startsWith ("JavaSocketConnector-"))
+				engine++;
+		}
+		System.out.println ("  pages: " + tabs + ", connector threads (besides listeners): " + engine);
+		System.out.println (String.format ("  throughput: %.1f frames/s, %.2f MB/s echoed",
+						   frameCount / seconds, frameCount * (double) size / seconds / (1024 * 1024)));
+		if (allocTotal >= 0 && frameCount > 0)
+			System.out.println (String.format ("  dispatcher allocation: %.1f bytes/send", allocTotal / (double) frameCount));
+		System.out.println (String.format ("  %-10s %8s %10s %10s %10s %10s", "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms"));
+		for (Map.Entry<String, List<Long>> entry : samples.entrySet ()) {
+			List<Long> list = entry.getValue ();
+			Collections.sort (list);
+			System.out.println (String.format ("  %-10s %8d %10.1f %10.3f %10.3f %10.3f", entry.getKey (), list.size (),
+							   list.size () / seconds, percentile (list, 0.50), percentile (list, 0.99), percentile (list, 0.999)));
+		}
+		return;
+	}
+
+	static double percentile (List<Long> sorted, double p) {
+		int index = (int) Math.ceil (p * sorted.size ()) - 1;
+		return sorted.get (Math.max (0, index)).longValue () / 1e6;
+	}
+
+	/* bytes allocated by the provided thread (-1 if unsupported) */
+	static long allocated (Thread thread) {
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean ();
+		if (thread == null || ! (mx instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes (thread.getId ());
+	}
+
+	/**
+	 * @brief The connector negotiates TLSv1 which current JDKs
+	 * disable by default: re-enable it for the tools process.
+	 */
+	static void enableLegacyTLS () {
+		String disabled = Security.getProperty ("jdk.tls.disabledAlgorithms");
+		if (disabled != null)
+			Security.setProperty ("jdk.tls.disabledAlgorithms", disabled.replaceAll ("TLSv1(\\.1)?\\s*,\\s*", ""));
+		return;
+	}
+
+	public static void main (String [] args) throws Exception {
+		LoadGenerator load = new LoadGenerator ();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals ("-c"))
+				load.count = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-f"))
+				load.frames = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-s"))
+				load.size = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-tls"))
+				load.tls = true;
+			else if (args[i].equals ("-tabs"))
+				load.tabs = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-pipeline"))
+				load.pipeline = true;
+			else if (args[i].equals ("-emulate"))
+				load.emulate = args[++i];
+			else if (args[i].equals ("-pool"))
+				load.pool = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-prewarm"))
+				load.prewarm = true;
+			else if (args[i].equals ("-bulk"))
+				load.bulk = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-v"))
+				load.verbose = true;
+			else if (args[i].equals ("-host"))
+				load.host = args[++i];
+			else if (args[i].equals ("-port"))
+				load.port = Integer.parseInt (args[++i]);
+			else {
+				System.err.println ("Usage: java LoadGenerator [-c connections] [-f frames] [-s size] [-tls] [-prewarm] [-pipeline] [-v] [-bulk n] [-tabs n] [-emulate spec] [-pool n] [-host host -port port]");
+				System.exit (1);
+			}
+		}
+		if (load.tls)
+			enableLegacyTLS ();
+		load.run ();
+		System.exit (load.errors > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.util.*;
+
+/**
+ * @brief Read buffers shared by the listeners of every connection
+ * (see SocketListener), in power of two size classes from MIN_SIZE
+ * to MAX_SIZE. A listener grows its buffer while reads fill it and
+ * returns to the smallest class once the connection is quiet, so
+ * idle connections hold little memory and bulk transfers need less
+ * reads. Buffers returned are kept for the next listener (including
+ * the one started after TLS activation) up to KEEP_BYTES per class.
+ */
+public class ReadBufferPool {
+
+	/* size classes (bytes) */
+	static final int MIN_SIZE   = 2048;
+	static final int MAX_SIZE   = 1024 * 1024;
+
+	/* bytes kept in each class free list */
+	static final int KEEP_BYTES = 256 * 1024;
+
+	final ArrayDeque<byte []> [] free;
+
+	@SuppressWarnings ("unchecked")
+	public ReadBufferPool () {
+		free = (ArrayDeque<byte []> []) new ArrayDeque<?> [classOf (MAX_SIZE) + 1];
+		for (int i = 0; i < free.length; i++)
+			free[i] = new ArrayDeque<byte []> ();
+	}
+
+	/**
+	 * @brief Returns the size class for the provided size (the
+	 * smallest one holding it, bounded by MIN_SIZE and MAX_SIZE).
+	 */
+	public static int sizeFor (int size) {
+		int result = MIN_SIZE;
+		while (result < size && result < MAX_SIZE)
+			result <<= 1;
+		return result;
+	}
+
+	static int classOf (int size) {
+		return Integer.numberOfTrailingZeros (sizeFor (size)) - Integer.numberOfTrailingZeros (MIN_SIZE);
+	}
+
+	/**
+	 * @brief Takes a buffer of the size class for the provided
+	 * size (a free one if any).
+	 */
+	public byte [] acquire (int size) {
+		size = sizeFor (size);
+		synchronized (this) {
+			byte [] buffer = free[classOf (size)].pollFirst ();
+			if (buffer != null)
+				return buffer;
+		}
+		return new byte [size];
+	}
+
+	/**
+	 * @brief Returns a buffer taken with acquire.
+	 */
+	public synchronized void release (byte [] buffer) {
+		ArrayDeque<byte []> list = free[classOf (buffer.length)];
+		if ((list.size () + 1) * buffer.length <= Math.max (KEEP_BYTES, buffer.length))
+			list.addFirst (buffer);
+		return;
+	}
+
+	/**
+	 * @brief Bytes kept in the free lists.
+	 */
+	public synchronized long kept () {
+		long result = 0;
+		for (ArrayDeque<byte []> list : free) {
+			for (byte [] buffer : list)
+				result += buffer.length;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,355 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.text.*;
+import java.util.*;
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+/**
+ * @brief Client side SASL mechanisms computed in Java for the JS
+ * SASL engine (see VortexSASLEngineJSC.js): SCRAM-SHA-1,
+ * SCRAM-SHA-256 (RFC 5802) and DIGEST-MD5 (RFC 2831). Blobs are
+ * exchanged base64 encoded, as they are placed inside BEEP SASL
+ * <blob> elements.
+ *
+ * SCRAM salted passwords (the iterated part) are cached per user,
+ * salt and iterations (and a digest of the password) for the JVM
+ * session, so authenticating again does not pay the iterations.
+ */
+public class SASLHelper {
+
+	/* salted passwords kept */
+	static final int CACHE_SIZE     = 32;
+
+	/* SCRAM iteration count accepted from the server (a larger
+	 * one would keep the connection busy hashing) */
+	static final int MAX_ITERATIONS = 100000;
+
+	/**
+	 * @brief State of one authentication exchange (opaque for JS).
+	 */
+	public static class Session {
+		String  mech;
+		String  authcid;
+		String  authzid;
+		String  password;
+		String  serverName;
+		int     step;
+
+		/* SCRAM */
+		String  algorithm;
+		String  gs2Header;
+		String  clientFirstBare;
+		String  nonce;
+		byte [] serverSignature;
+
+		/* DIGEST-MD5 */
+		String  service = "beep";
+		String  rspauth;
+
+		String  error;
+		boolean complete;
+	}
+
+	/* salted passwords, least recently used removed first */
+	final Map<String, byte []> salted = new LinkedHashMap<String, byte []> (16, 0.75f, true) {
+		protected boolean removeEldestEntry (Map.Entry<String, byte []> eldest) {
+			return size () > CACHE_SIZE;
+		}
+	};
+
+	SecureRandom random;
+
+	/**
+	 * @brief Returns true if the mechanism is supported.
+	 */
+	public static boolean isSupported (String mech) {
+		return "SCRAM-SHA-1".equals (mech) || "SCRAM-SHA-256".equals (mech) || "DIGEST-MD5".equals (mech);
+	}
+
+	/**
+	 * @brief Starts an authentication exchange.
+	 *
+	 * @param mech The mechanism (see isSupported).
+	 * @param authcid The authentication id (user).
+	 * @param password The user password.
+	 * @param authzid The authorization id (null or empty to act as
+	 * authcid).
+	 * @param serverName The server name (DIGEST-MD5 digest-uri).
+	 */
+	public Session start (String mech, String authcid, String password, String authzid, String serverName) {
+		Session session    = new Session ();
+		session.mech       = mech;
+		session.authcid    = authcid;
+		session.password   = password;
+		session.authzid    = (authzid == null || authzid.length () == 0 || authzid.equals (authcid)) ? null : authzid;
+		session.serverName = serverName;
+		if (! isSupported (mech))
+			session.error = "Unsupported SASL mechanism: " + mech;
+		else if (authcid == null || password == null)
+			session.error = "Unable to start " + mech + " mechanism, authenticationId or password is missing";
+		else if (mech.startsWith ("SCRAM-"))
+			session.algorithm = mech.equals ("SCRAM-SHA-1") ? "SHA-1" : "SHA-256";
+		return session;
+	}
+
+	/**
+	 * @brief Runs the next client step.
+	 *
+	 * @param session The exchange started with start.
+	 * @param blob The base64 blob received from the server (null
+	 * for the initial client blob).
+	 *
+	 * @return The base64 blob to send (empty if there is nothing
+	 * to send) or null if the exchange failed (see
+	 * Session.error). Once the server is verified the session is
+	 * complete.
+	 */
+	public String step (Session session, String blob) {
+		if (session.error != null)
+			return null;
+		try {
+			String input  = blob == null ? "" : new String (Base64Coder.decode (blob.trim ()), "UTF-8");
+			String output = session.algorithm != null ? scramStep (session, input) : digestStep (session, input);
+			session.step++;
+			if (output == null)
+				return null;
+			return new String (Base64Coder.encode (output.getBytes ("UTF-8")));
+		} catch (Exception ex) {
+			session.error = "SASL " + session.mech + " failure, error found was: " + ex.getMessage ();
+			return null;
+		}
+	}
+
+	/* SCRAM client steps: client-first, client-final and server
+	 * signature verification */
+	String scramStep (Session session, String input) throws Exception {
+		switch (session.step) {
+		case 0:
+			session.gs2Header       = "n," + (session.authzid == null ? "" : "a=" + saslName (session.authzid)) + ",";
+			session.nonce           = newNonce ();
+			session.clientFirstBare = "n=" + saslName (session.authcid) + ",r=" + session.nonce;
+			return session.gs2Header + session.clientFirstBare;
+		case 1:
+			Map<String, String> attrs = scramAttributes (input);
+			if (attrs.containsKey ("e"))
+				return fail (session, "server error: " + attrs.get ("e"));
+			String  nonce      = attrs.get ("r");
+			String  salt       = attrs.get ("s");
+			String  iterations = attrs.get ("i");
+			if (nonce == null || salt == null || iterations == null || ! nonce.startsWith (session.nonce))
+				return fail (session, "invalid server-first-message");
+			int     count;
+			try {
+				count = Integer.parseInt (iterations);
+			} catch (NumberFormatException ex) {
+				return fail (session, "invalid iteration count: " + iterations);
+			}
+			if (count < 1 || count > MAX_ITERATIONS)
+				return fail (session, "iteration count out of range (1-" + MAX_ITERATIONS + "): " + count);
+
+			String  algorithm  = "Hmac" + session.algorithm.replace ("-", "");
+			byte [] password   = saltedPassword (session, Base64Coder.decode (salt), count);
+			String  withoutProof = "c=" + new String (Base64Coder.encode (session.gs2Header.getBytes ("UTF-8"))) + ",r=" + nonce;
+			byte [] authMessage  = (session.clientFirstBare + "," + input + "," + withoutProof).getBytes ("UTF-8");
+
+			byte [] clientKey  = hmac (algorithm, password, "Client Key".getBytes ("US-ASCII"));
+			byte [] storedKey  = MessageDigest.getInstance (session.algorithm).digest (clientKey);
+			byte [] proof      = hmac (algorithm, storedKey, authMessage);
+			for (int i = 0; i < proof.length; i++)
+				proof[i] ^= clientKey[i];
+			byte [] serverKey  = hmac (algorithm, password, "Server Key".getBytes ("US-ASCII"));
+			session.serverSignature = hmac (algorithm, serverKey, authMessage);
+			return withoutProof + ",p=" + new String (Base64Coder.encode (proof));
+		case 2:
+			attrs = scramAttributes (input);
+			if (attrs.containsKey ("e"))
+				return fail (session, "server error: " + attrs.get ("e"));
+			String verifier = attrs.get ("v");
+			if (verifier == null || ! MessageDigest.isEqual (Base64Coder.decode (verifier), session.serverSignature))
+				return fail (session, "server signature verification failed");
+			session.complete = true;
+			return "";
+		}
+		return fail (session, "unexpected server message");
+	}
+
+	/* DIGEST-MD5 client steps: digest-response and rspauth
+	 * verification */
+	String digestStep (Session session, String input) throws Exception {
+		/* no initial response: the server starts */
+		if (input.length () == 0 && session.rspauth == null)
+			return "";
+
+		Map<String, String> directives = digestDirectives (input);
+		if (session.rspauth != null) {
+			if (! session.rspauth.equals (directives.get ("rspauth")))
+				return fail (session, "server rspauth verification failed");
+			session.complete = true;
+			return "";
+		}
+
+		String nonce = directives.get ("nonce");
+		if (nonce == null)
+			return fail (session, "invalid digest-challenge");
+		String qop = directives.get ("qop");
+		if (qop != null && ! Arrays.asList (qop.split ("\\s*,\\s*")).contains ("auth"))
+			return fail (session, "server does not allow qop=auth");
+
+		boolean utf8   = "utf-8".equals (directives.get ("charset"));
+		String  realm  = directives.containsKey ("realm") ? directives.get ("realm") : "";
+		String  cnonce = newNonce ();
+		String  nc     = "00000001";
+		String  uri    = session.service + "/" + (session.serverName != null ? session.serverName : realm);
+
+		MessageDigest md5 = MessageDigest.getInstance ("MD5");
+		byte [] secret    = md5.digest (concat (digestBytes (session.authcid, utf8), ":", digestBytes (realm, utf8), ":", digestBytes (session.password, utf8)));
+		String  a1Tail    = ":" + nonce + ":" + cnonce + (session.authzid == null ? "" : ":" + session.authzid);
+		String  ha1       = hex (md5.digest (concat (secret, a1Tail.getBytes ("UTF-8"))));
+		String  kdTail    = ":" + nonce + ":" + nc + ":" + cnonce + ":auth:";
+		String  response  = hex (md5.digest ((ha1 + kdTail + hex (md5.digest (("AUTHENTICATE:" + uri).getBytes ("UTF-8")))).getBytes ("UTF-8")));
+		session.rspauth   = hex (md5.digest ((ha1 + kdTail + hex (md5.digest ((":" + uri).getBytes ("UTF-8")))).getBytes ("UTF-8")));
+
+		StringBuilder builder = new StringBuilder ();
+		if (utf8)
+			builder.append ("charset=utf-8,");
+		builder.append ("username=\"").append (quote (session.authcid)).append ("\",");
+		if (directives.containsKey ("realm"))
+			builder.append ("realm=\"").append (quote (realm)).append ("\",");
+		builder.append ("nonce=\"").append (quote (nonce)).append ("\",nc=").append (nc);
+		builder.append (",cnonce=\"").append (cnonce).append ("\",digest-uri=\"").append (quote (uri)).append ("\"");
+		builder.append (",response=").append (response).append (",qop=auth");
+		if (session.authzid != null)
+			builder.append (",authzid=\"").append (quote (session.authzid)).append ("\"");
+		return builder.toString ();
+	}
+
+	/* salted password (Hi), cached */
+	byte [] saltedPassword (Session session, byte [] salt, int iterations) throws Exception {
+		String  normalized = Normalizer.normalize (session.password, Normalizer.Form.NFKC);
+		byte [] password   = normalized.getBytes ("UTF-8");
+		String  key        = session.algorithm + "\n" + session.authcid + "\n" + new String (Base64Coder.encode (salt)) + "\n" + iterations
+			+ "\n" + hex (MessageDigest.getInstance ("SHA-256").digest (password));
+		synchronized (salted) {
+			byte [] value = salted.get (key);
+			if (value != null)
+				return value;
+		}
+
+		/* Hi (password, salt, iterations) */
+		Mac     mac    = Mac.getInstance ("Hmac" + session.algorithm.replace ("-", ""));
+		mac.init (new SecretKeySpec (password, mac.getAlgorithm ()));
+		mac.update (salt);
+		byte [] u      = mac.doFinal (new byte [] {0, 0, 0, 1});
+		byte [] result = u.clone ();
+		for (int i = 1; i < iterations; i++) {
+			u = mac.doFinal (u);
+			for (int j = 0; j < result.length; j++)
+				result[j] ^= u[j];
+		}
+
+		synchronized (salted) {
+			salted.put (key, result);
+		}
+		return result;
+	}
+
+	static byte [] hmac (String algorithm, byte [] key, byte [] data) throws Exception {
+		Mac mac = Mac.getInstance (algorithm);
+		mac.init (new SecretKeySpec (key, algorithm));
+		return mac.doFinal (data);
+	}
+
+	/* client nonce (SCRAM nonce, DIGEST-MD5 cnonce) */
+	synchronized String newNonce () {
+		if (random == null)
+			random = new SecureRandom ();
+		byte [] result = new byte [18];
+		random.nextBytes (result);
+		return new String (Base64Coder.encode (result));
+	}
+
+	String fail (Session session, String reason) {
+		session.error = "SASL " + session.mech + " failure, " + reason;
+		return null;
+	}
+
+	/* SCRAM saslname escaping */
+	static String saslName (String value) {
+		return value.replace ("=", "=3D").replace (",", "=2C");
+	}
+
+	/* key=value attributes of a SCRAM message */
+	static Map<String, String> scramAttributes (String message) {
+		Map<String, String> attrs = new HashMap<String, String> ();
+		for (String item : message.split (",")) {
+			if (item.length () > 1 && item.charAt (1) == '=')
+				attrs.put (item.substring (0, 1), item.substring (2));
+		}
+		return attrs;
+	}
+
+	/* directives of a DIGEST-MD5 challenge (values unquoted) */
+	static Map<String, String> digestDirectives (String challenge) {
+		Map<String, String> directives = new HashMap<String, String> ();
+		int                 i          = 0;
+		int                 size       = challenge.length ();
+		while (i < size) {
+			int equal = challenge.indexOf ('=', i);
+			if (equal < 0)
+				break;
+			String        name  = challenge.substring (i, equal).trim ().toLowerCase ();
+			StringBuilder value = new StringBuilder ();
+			i = equal + 1;
+			if (i < size && challenge.charAt (i) == '"') {
+				for (i++; i < size && challenge.charAt (i) != '"'; i++) {
+					if (challenge.charAt (i) == '\\' && i + 1 < size)
+						i++;
+					value.append (challenge.charAt (i));
+				}
+				i++;
+			} else {
+				for (; i < size && challenge.charAt (i) != ','; i++)
+					value.append (challenge.charAt (i));
+			}
+			/* skip to next directive */
+			while (i < size && (challenge.charAt (i) == ',' || challenge.charAt (i) == ' '))
+				i++;
+			/* first realm offered is used */
+			if (! directives.containsKey (name))
+				directives.put (name, value.toString ().trim ());
+		}
+		return directives;
+	}
+
+	/* username, realm and password bytes: ISO-8859-1 when possible
+	 * (RFC 2831, 2.1.2.1) */
+	static byte [] digestBytes (String value, boolean utf8) throws Exception {
+		if (utf8 && ! Charset.forName ("ISO-8859-1").newEncoder ().canEncode (value))
+			return value.getBytes ("UTF-8");
+		return value.getBytes ("ISO-8859-1");
+	}
+
+	static byte [] concat (Object ... parts) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream ();
+		for (Object part : parts)
+			out.write (part instanceof String ? ((String) part).getBytes ("UTF-8") : (byte []) part);
+		return out.toByteArray ();
+	}
+
+	static String quote (String value) {
+		return value.replace ("\\", "\\\\").replace ("\"", "\\\"");
+	}
+
+	static String hex (byte [] data) {
+		StringBuilder builder = new StringBuilder (data.length * 2);
+		for (int i = 0; i < data.length; i++)
+			builder.append (BridgeEncoding.HEX[(data[i] >> 4) & 0xf]).append (BridgeEncoding.HEX[data[i] & 0xf]);
+		return builder.toString ();
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.util.*;
+
+/**
+ * @brief Regression check for the send path: measures the bytes
+ * allocated by the dispatcher thread for each send (encoding and
+ * writing the content, see SendCommand) over one connection to an
+ * embedded StandInServer, for small and big contents, and exits with
+ * status 1 if a send allocates more than the budget or if the
+ * allocation grows with the content size (a byte [] per send).
+ *
+ * Built by the tools target (not part of the applet jar).
+ *
+ * Usage: java SendAllocationCheck [-n sends] [-budget bytes]
+ */
+public class SendAllocationCheck implements StubBrowser.Handler {
+
+	/* content sizes checked (characters, ASCII) */
+	static final int [] SIZES = {64, 1024, 65536};
+
+	int  sends    = 2000;
+	long budget   = 256;
+	long received = 0;
+
+	public Object call (String conn_id, String method, String [] args) {
+		synchronized (this) {
+			if (method.equals ("onmessage"))
+				received += Base64Coder.decode (args[0]).length;
+			notifyAll ();
+		}
+		return Boolean.TRUE;
+	}
+
+	/* send the content count times, each one once the previous
+	 * was echoed, returning dispatcher bytes allocated per send */
+	double measure (ConnectorCore core, SocketState state, String content, int count) throws Exception {
+		long start = LoadGenerator.allocated (core.runtime.thread);
+		for (int i = 0; i < count; i++) {
+			long expected;
+			synchronized (this) {
+				expected = received + content.length ();
+			}
+			if (! core.send (content, content.length (), state))
+				throw new Exception ("send rejected");
+			synchronized (this) {
+				long deadline = System.currentTimeMillis () + 10000;
+				while (received < expected) {
+					if (System.currentTimeMillis () > deadline)
+						throw new Exception ("timeout waiting echo");
+					wait (100);
+				}
+			}
+		}
+		return (LoadGenerator.allocated (core.runtime.thread) - start) / (double) count;
+	}
+
+	int run () throws Exception {
+		StandInServer server = new StandInServer (0, false);
+		server.start ();
+
+		StubBrowser   browser = new StubBrowser (this);
+		ConnectorCore core    = new ConnectorCore (browser);
+		core.start ();
+		while (browser.globals.get ("isReady") == null)
+			Thread.sleep (10);
+		if (LoadGenerator.allocated (core.runtime.thread) < 0) {
+			System.out.println ("SendAllocationCheck: thread allocation not supported by this JVM, skipped");
+			return 0;
+		}
+
+		SocketState state = core.connect ("127.0.0.1", server.getPort (), "UTF-8", "1");
+		synchronized (this) {
+			while (received < StandInServer.GREETING.length ())
+				wait (100);
+		}
+
+		int    failures = 0;
+		double smallest = -1;
+		for (int size : SIZES) {
+			StringBuilder builder = new StringBuilder (size);
+			for (int i = 0; i < size; i++)
+				builder.append ((char) ('a' + (i % 26)));
+			String content = builder.toString ();
+
+			/* warm up (pools, buffers, JIT) */
+			measure (core, state, content, Math.max (100, sends / 10));
+			double perSend = measure (core, state, content, sends);
+			if (smallest < 0)
+				smallest = perSend;
+
+			boolean ok = perSend <= budget && perSend - smallest <= budget / 2;
+			if (! ok)
+				failures++;
+			System.out.println (String.format ("  %6d chars: %8.1f bytes/send %s", size, perSend, ok ? "ok" : "FAILED"));
+		}
+
+		core.close (state);
+		core.stop ();
+		System.out.println ("SendAllocationCheck: " + SIZES.length + " sizes, " + failures + " failures (budget " + budget + " bytes/send)");
+		return failures > 0 ? 1 : 0;
+	}
+
+	public static void main (String [] args) throws Exception {
+		SendAllocationCheck check = new SendAllocationCheck ();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals ("-n"))
+				check.sends = Integer.parseInt (args[++i]);
+			else if (args[i].equals ("-budget"))
+				check.budget = Long.parseLong (args[++i]);
+			else {
+				System.err.println ("Usage: java SendAllocationCheck [-n sends] [-budget bytes]");
+				System.exit (2);
+			}
+		}
+		System.exit (check.run ());
+	}
+}
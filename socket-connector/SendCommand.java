@@ -5,46 +5,238 @@
 import netscape.javascript.*;
 import java.net.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
 
 public class SendCommand implements Command {
-	/** 
-	 * @brief Reference to the content to be sent.
+	/**
+	 * @brief Reference to the content to be sent (encoded with
+	 * the connection encoding at the time it is written).
 	 */
-	public byte [] content;
-	/** 
-	 * @brief Reference to the content length.
+	public String content;
+	/**
+	 * @brief Amount of bytes (once encoded) to be written from
+	 * the content. A negative value writes all the content.
 	 */
 	public int length;
 
-	/** 
-	 * @brief Reference to the output buffer.
+	/**
+	 * @brief Output the content is being written to: the
+	 * connection stream when the command runs (not when it is
+	 * queued, so sends can be issued while connecting or before
+	 * TLS is enabled).
 	 */
-	public OutputStream output;
+	OutputStream output;
 
-	/** 
+	/**
 	 * @brief Reference socket where the send operation is taking place.
 	 */
 	SocketState state;
 
+	/** 
+	 * @brief Bytes accounted on the connection manager for this
+	 * send (released once done).
+	 */
+	int reserved;
+
+	/* progress kept between slices: characters encoded and bytes
+	 * written */
+	int offset;
+	int written;
+
+	/* characters copied from the content on each encode step */
+	static final int CHAR_CHUNK = 8192;
+	/* size of the buffer used to hold encoded bytes before writing */
+	static final int BYTE_CHUNK = 16384;
+	/* bytes written on each scheduler turn */
+	static final int SLICE_SIZE = BYTE_CHUNK;
+	/* max number of released commands kept for reuse */
+	static final int MAX_POOL   = 64;
+
+	/* pool of released send commands (linked through next) */
+	private static final Object      poolLock = new Object ();
+	private static SendCommand       pool     = null;
+	private static int               poolSize = 0;
+	private SendCommand              next;
+
+	/* encode buffers, reused by each thread running send operations */
+	private static final ThreadLocal<CharBuffer> charBuffers = new ThreadLocal<CharBuffer> () {
+		protected CharBuffer initialValue () {
+			return CharBuffer.allocate (CHAR_CHUNK);
+		}
+	};
+	private static final ThreadLocal<ByteBuffer> byteBuffers = new ThreadLocal<ByteBuffer> () {
+		protected ByteBuffer initialValue () {
+			return ByteBuffer.allocate (BYTE_CHUNK);
+		}
+	};
+
+	/**
+	 * @brief Gets a send command from the pool (or creates a new
+	 * one if the pool is empty).
+	 */
+	static SendCommand acquire () {
+		synchronized (poolLock) {
+			SendCommand cmd = pool;
+			if (cmd == null)
+				return new SendCommand ();
+			pool     = cmd.next;
+			cmd.next = null;
+			poolSize--;
+			return cmd;
+		}
+	}
+
+	/**
+	 * @brief Clears the command and returns it to the pool.
+	 */
+	void release () {
+		content = null;
+		output  = null;
+		state   = null;
+		length  = 0;
+		reserved = 0;
+		offset   = 0;
+		written  = 0;
+		synchronized (poolLock) {
+			if (poolSize >= MAX_POOL)
+				return;
+			next = pool;
+			pool = this;
+			poolSize++;
+		}
+		return;
+	}
+
 	/*** the following public members are initialized by the
-	 *** command doOperation() 
+	 *** command doOperation()
 	 ***/
 
-	/** 
-	 * @brief Implements the socket connect operation.
+	/**
+	 * @brief Implements the socket send operation. Content is
+	 * encoded in chunks into per thread buffers using the
+	 * connection cached encoder so no byte [] is allocated for
+	 * each send. Big contents are written SLICE_SIZE bytes per
+	 * turn, putting the command back at the head of its lane so
+	 * other connections can run in between.
 	 *
 	 * @param browser The reference to the browser.
 	 */
-	public boolean doOperation (JSObject browser, JavaSocketConnector dispacher) {
+	public boolean doOperation (JSObject browser, ConnectorCore dispacher) {
+		boolean finished = true;
 		try{
+			/* get the stream on the first slice (set by connect
+			 * and replaced by TLS activation) */
+			if (output == null)
+				output = state.out;
+			if (output == null)
+				throw new IOException ("connection is not opened");
+
 			/* try to send content */
-			output.write (content, 0, length);
+			CharsetEncoder encoder = state.getEncoder ();
+			Object         event   = ConnectorTrace.trace.beginWrite ();
+			int            before  = written;
+			synchronized (encoder) {
+				finished = writeSlice (encoder, SLICE_SIZE);
+			}
 			output.flush ();
+			ConnectorTrace.trace.endWrite (event, state, written - before);
+			state.lastActivity = System.currentTimeMillis ();
 		} catch (Exception ex) {
+			finished = true;
 			LogHandling.error (state, "Failed to send content, error found was: " + ex.getMessage());
 			return false;
+		} finally {
+			if (finished) {
+				dispacher.manager.release (state, reserved);
+				release ();
+			}
 		}
+
+		/* continue on next turn */
+		if (! finished)
+			dispacher.scheduler.pushFront (state, this);
+
 		/* LogHandling.info (caller, "Sent content without problem.."); */
 		return true;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @internal Encodes and writes content, stopping once slice
+	 * bytes were written on this call (progress is kept in offset
+	 * and written). Bytes are recorded into the connection capture
+	 * when defined.
+	 *
+	 * @return true when all the content (or length bytes) was written.
+	 */
+	boolean writeSlice (CharsetEncoder encoder, int slice) throws IOException {
+		CharBuffer     chars    = charBuffers.get ();
+		ByteBuffer     bytes    = byteBuffers.get ();
+		TrafficCapture capture  = state.capture;
+		int            size     = content.length ();
+		int            limit    = length < 0 ? Integer.MAX_VALUE : length;
+		long           sliceEnd = (long) written + slice;
+		int            read     = offset;
+		int            count;
+		boolean        last;
+		CoderResult    result;
+
+		/* encoder state is kept between slices */
+		if (offset == 0 && written == 0)
+			encoder.reset ();
+		chars.clear ();
+		bytes.clear ();
+
+		while (written < limit) {
+			/* copy next characters into the char buffer */
+			count = Math.min (chars.remaining (), size - read);
+			content.getChars (read, read + count, chars.array (), chars.position ());
+			chars.position (chars.position () + count);
+			read += count;
+			last  = (read == size);
+
+			/* encode them (a trailing high surrogate is kept
+			 * by compact for the next step) */
+			chars.flip ();
+			result = encoder.encode (chars, bytes, last);
+			chars.compact ();
+
+			if (last && result.isUnderflow ()) {
+				/* all content encoded, flush encoder and
+				 * pending bytes */
+				while (encoder.flush (bytes).isOverflow ())
+					written = writeBytes (output, bytes, written, limit, capture);
+				written = writeBytes (output, bytes, written, limit, capture);
+				return true;
+			}
+
+			/* write encoded bytes once the buffer is full */
+			if (result.isOverflow ()) {
+				written = writeBytes (output, bytes, written, limit, capture);
+
+				/* end of slice: remember characters not
+				 * encoded yet */
+				if (written >= sliceEnd && written < limit) {
+					offset = read - chars.position ();
+					return false;
+				}
+			}
+		} /* end while */
+		return true;
+	}
+
+	/**
+	 * @internal Writes pending encoded bytes without going beyond
+	 * limit, returning the updated amount written.
+	 */
+	static int writeBytes (OutputStream output, ByteBuffer bytes, int written, int limit, TrafficCapture capture) throws IOException {
+		int count = Math.min (bytes.position (), limit - written);
+		if (count > 0) {
+			output.write (bytes.array (), bytes.arrayOffset (), count);
+			if (capture != null)
+				capture.record (TrafficCapture.OUTBOUND, bytes.array (), bytes.arrayOffset (), count);
+		}
+		bytes.clear ();
+		return written + count;
+	}
+}
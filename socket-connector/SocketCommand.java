@@ -21,20 +21,69 @@ public class SocketCommand implements Command {
 	 ***/
 	public SocketState state;
 
+	/** 
+	 * @brief When defined, the connection was rejected by the
+	 * connection manager and this is reported instead.
+	 */
+	public String rejectReason;
+
 	/** 
 	 * @brief Implements the socket connect operation.
 	 *
 	 * @param browser The reference to the browser.
 	 */
-	public boolean doOperation (JSObject browser, JavaSocketConnector dispacher) {
+	public boolean doOperation (JSObject browser, ConnectorCore dispacher) {
+		if (rejectReason != null)
+			return reportError (rejectReason, dispacher);
+
+		/* closed before being connected (already notified) */
+		if (state.closed) {
+			dispacher.dropQueued (state);
+			return false;
+		}
+
+		Object               event     = ConnectorTrace.trace.beginConnect ();
+		boolean              connected = false;
+		ConnectionPool.Entry pooled    = null;
 		try {
-			/* do connect operation */
-			state.socket = new Socket (host, port);
+			/* do connect operation (taking a warm connection
+			 * if the pool keeps them for this peer, see
+			 * ConnectionPool) */
+			if (dispacher.transport == TransportFactory.DIRECT)
+				pooled = dispacher.runtime.pool.take (host, port);
+			if (pooled != null)
+				state.socket = pooled.socket;
+			else
+				state.socket = dispacher.transport.createSocket (host, port);
 			state.out    = state.socket.getOutputStream();
 			/* new PrintWriter (state.socket.getOutputStream(), true); */
 
-			/* create the listener */
+			/* closed while connecting (already notified) */
+			if (state.closed) {
+				state.socket.close ();
+				dispacher.manager.unregister (state);
+				dispacher.dropQueued (state);
+				return false;
+			}
+
+			/* open traffic capture if enabled */
+			if (dispacher.captureDir != null)
+				openCapture (dispacher);
+
+			/* get how read content is passed into JS */
+			state.bridge = BridgeEncoding.parse (state.getMember ("bridgeEncoding"));
+
+			/* parse channel 0 documents in the read path if
+			 * requested */
+			if ("true".equals (String.valueOf (state.getMember ("parseChannel0"))))
+				state.channel0 = new Channel0Parser (state.encoding);
+
+			/* create the listener and the queue where
+			 * it places content read */
+			state.inbound  = new InboundQueue (dispacher.inboundLimit, dispacher.inboundMemory, dispacher.spillDir);
 			state.listener = new SocketListener (state.socket, state, dispacher, state.encoding);
+			if (pooled != null)
+				state.listener.setEarly (pooled.early, pooled.earlyCount);
 
 			/* change state to OPENED = 1 */
 			state.setMember ("readyState", 1); 
@@ -42,6 +91,11 @@ public class SocketCommand implements Command {
 			/* start the listener at the end to avoid
 			 * onmessage to be fired before onopen */
 			state.listener.start();
+			connected = true;
+
+			/* closed while the listener was created */
+			if (state.closed)
+				state.listener.close ();
 		} catch (UnknownHostException ex) {
 			return reportError ("Unable to resolve host name: \"" + host + "\". Check your DNS configuration or ensure hostname is right.", dispacher);
 
@@ -53,14 +107,32 @@ public class SocketCommand implements Command {
 
 		} catch (Exception ex) {
 			return reportError ("Unable to connect to \"" + host + "\" on port: " + port + "\n" + ex.getMessage(), dispacher); 
+		} finally {
+			ConnectorTrace.trace.endConnect (event, state, host, port, connected);
 		}
 
 		return true;
 	}
 
-	private boolean reportError (String reason, JavaSocketConnector dispacher) {
+	private void openCapture (ConnectorCore dispacher) {
+		try {
+			state.capture = TrafficCapture.open (dispacher.captureDir, state.conn_id, port, dispacher.captureSize);
+			dispacher.keepCapture (state.capture.file);
+			LogHandling.info (state, "SocketCommand.doOperation: capturing traffic into " + state.capture.file);
+		} catch (Exception ex) {
+			/* capture is optional, keep going without it */
+			LogHandling.warn (state, "SocketCommand.doOperation: unable to open traffic capture, error found was: " + ex.getMessage ());
+		}
+		return;
+	}
+
+	private boolean reportError (String reason, ConnectorCore dispacher) {
 
 		LogHandling.error (state, reason); 
+		dispacher.manager.unregister (state);
+
+		/* drop commands issued while connecting */
+		dispacher.dropQueued (state);
 
 		/* readyState = CLOSED */
 		state.setMember ("readyState", 2); 
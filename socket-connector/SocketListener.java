@@ -15,17 +15,31 @@ public class SocketListener extends Thread {
 	public InputStream       in;       
 	public boolean           disableOnOpenNotify;
 
-	boolean                  running = false;	
+	volatile boolean         running = false;
 	SocketState              state;
-	JavaSocketConnector      dispacher;
+	ConnectorCore            dispacher;
 	Thread                   listenerThread;
 
+	/* read buffer taken from the ReadBufferPool: starts with
+	 * INITIAL_BUFFER bytes, doubled while reads fill it (up to
+	 * ConnectorCore.readBufferMax) and back to the smallest size
+	 * once nothing is read for QUIET_TIME milliseconds */
+	static final int         INITIAL_BUFFER = 8192;
+	static final long        QUIET_TIME     = 1000;
+	byte []                  buffer;
+	long                     lastRead;
+
+	/* content already read from the socket (pooled connection,
+	 * see setEarly) */
+	byte []                  early;
+	int                      earlyCount;
+
 	/** 
 	 * @brief Creates a socket listener that reads content from
-	 * the socket and notifies content read into the callers
-	 * onmessage method.
+	 * the socket and queues it to be notified into the callers
+	 * onmessage method (see DeliveryStage).
 	 */ 
-	public SocketListener (Socket _socket, SocketState _state, JavaSocketConnector _dispacher, String _encoding) throws IOException{
+	public SocketListener (Socket _socket, SocketState _state, ConnectorCore _dispacher, String _encoding) throws IOException{
 		/* get references */
 		socket    = _socket;
 		state     = _state;
@@ -46,22 +60,43 @@ public class SocketListener extends Thread {
 	public void close () {
 		LogHandling.info (state, "SocketListener.close: finishing socket listener instance..");
 		try {
+			/* stopped (TLS activation): the connection
+			 * goes on with the next listener */
 			if(running == false) 
 				return;
 			running = false;
+			dispacher.manager.unregister (state);
 			/* close the socket */
 			if (! socket.isClosed ())
 				socket.close();
 			in.close();
+			if (state.capture != null)
+				state.capture.close ();
 		} catch (Exception ex) {}
 		return;
 	}
 
+	/** 
+	 * @brief Starts the listener thread. Flagged as running (and
+	 * its thread recorded) before the thread starts so a
+	 * stopListener issued right after (pipelined enableTLS) always
+	 * stops it.
+	 */
+	public synchronized void start () {
+		running        = true;
+		listenerThread = this;
+		super.start ();
+		return;
+	}
+
 	public void stopListener () {
-		try {
-			/* set to terminate */
-			running = false;
+		/* set to terminate */
+		running = false;
 
+		/* not started */
+		if (listenerThread == null)
+			return;
+		try {
 			/* stop listener thread */
 			listenerThread.interrupt ();
 
@@ -74,20 +109,82 @@ public class SocketListener extends Thread {
 		return;
 	}
 
+	/** 
+	 * @brief Content read from the socket before the listener was
+	 * created (checking a ConnectionPool entry), queued before the
+	 * next reads once started.
+	 */
+	public void setEarly (byte [] data, int count) {
+		early      = data;
+		earlyCount = count;
+		return;
+	}
+
+	/* queue content read (waits while the browser is behind), the
+	 * delivery stage notifies it */
+	void queue (byte [] data, int size) {
+		/* record content read */
+		if (state.capture != null)
+			state.capture.record (TrafficCapture.INBOUND, data, 0, size);
+
+		state.inbound.put (data, 0, size);
+		dispacher.delivery.schedule (state);
+		return;
+	}
+
+	/* no more content: the delivery stage notifies onclose after
+	 * the content still queued */
+	void finish () {
+		state.inbound.finish ();
+		dispacher.delivery.schedule (state);
+		return;
+	}
+
+	/* replace the read buffer by one of the provided size (0
+	 * returns it), if the connection memory limit allows it */
+	void resize (int size) {
+		if (size > 0)
+			size = ReadBufferPool.sizeFor (size);
+		if (buffer != null && buffer.length == size)
+			return;
+		if (! dispacher.manager.resize (state, size))
+			return;
+		if (buffer != null)
+			dispacher.runtime.buffers.release (buffer);
+		buffer = size == 0 ? null : dispacher.runtime.buffers.acquire (size);
+		return;
+	}
+
+	/** 
+	 * @internal Listener thread: reads (see listen) and returns
+	 * the read buffer once finished (also when stopped to enable
+	 * TLS, where the next listener takes it again).
+	 */
+	public void run () {
+		try {
+			listen ();
+		} finally {
+			resize (0);
+		}
+		return;
+	}
+
 	/** 
 	 * @internal Loop that iterates reading content from the
-	 * socket and notifying such content on the socket onmessage
+	 * socket and queuing such content for the socket onmessage
 	 * handler.
 	 */
-	public void run () {
-		running = true;
-		String str = null;
-		byte[] buffer = new byte[8192];
+	void listen () {
 		int    size;
+		Object event;
+
+		resize (Math.min (INITIAL_BUFFER, dispacher.readBufferMax));
+		if (buffer == null)
+			resize (ReadBufferPool.MIN_SIZE);
+		lastRead = System.currentTimeMillis ();
 
 		/* set lowest priority */
-		listenerThread = Thread.currentThread ();
-		listenerThread.setPriority (Thread.MIN_PRIORITY);
+		setPriority (Thread.MIN_PRIORITY);
 
 		/* notify here connection created */
 		if (! disableOnOpenNotify)
@@ -96,28 +193,46 @@ public class SocketListener extends Thread {
 		/* configure default timeout: 20ms */
 		try {socket.setSoTimeout (20);} catch (Exception ex) {}
 
+		/* content read before starting */
+		if (earlyCount > 0)
+			queue (early, earlyCount);
+		early = null;
+
 		while (running) {
 			try{
 				/* read from the inputstream */
-				size = in.read (buffer, 0, buffer.length);
+				event = ConnectorTrace.trace.beginRead ();
+				size  = in.read (buffer, 0, buffer.length);
 
 				if (size == 0 || size == -1) {
 
 					LogHandling.info (state, "SocketListener.run: Calling to close socket listener because it was received empty content..");
 					close();
 
-					/* fire onclose event */
-					dispacher.notify (state, "onclose", null);
+					/* fire onclose event (once content queued
+					 * is delivered) */
+					finish ();
 
 					return;
 				}
 
-				/* notify content found */
-				str = new String (buffer, 0, size, encoding);
-				dispacher.notify (state, "onmessage", str);
+				lastRead           = System.currentTimeMillis ();
+				state.lastActivity = lastRead;
+				ConnectorTrace.trace.endRead (event, state, size);
+
+				/* queue content found */
+				queue (buffer, size);
+
+				/* more content is likely waiting: read
+				 * bigger blocks */
+				if (size == buffer.length && size < dispacher.readBufferMax)
+					resize (Math.min (size * 2, dispacher.readBufferMax));
 			} catch (SocketTimeoutException ex) {
 				if (! running) /* check to terminate listener */
 					return;
+				/* quiet connection, keep the smallest buffer */
+				if (buffer.length > ReadBufferPool.MIN_SIZE && System.currentTimeMillis () - lastRead > QUIET_TIME)
+					resize (ReadBufferPool.MIN_SIZE);
 				/* timeout, continue */
 				continue;
 			} catch (Exception ex) {
@@ -128,8 +243,9 @@ public class SocketListener extends Thread {
 				LogHandling.error (state, "SocketListener.run: Error found while reading content from socket, error was: " + ex.getMessage());
 				close ();
 
-				/* fire onclose event */
-				dispacher.notify (state, "onclose", null);
+				/* fire onclose event (once content queued
+				 * is delivered) */
+				finish ();
 
 				return;
 			}
@@ -6,6 +6,8 @@
 import netscape.javascript.*;
 import java.net.*;
 import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
 
 public class SocketState {
 	/** 
@@ -28,6 +30,87 @@ public class SocketState {
 	 */
 	public String encoding;
 
+	/** 
+	 * @brief Encoder cached for the connection encoding (see
+	 * getEncoder).
+	 */
+	CharsetEncoder encoder;
+
+	/** 
+	 * @brief Decoder cached for the connection encoding (see
+	 * getDecoder), used by the DeliveryStage.
+	 */
+	CharsetDecoder decoder;
+
+	/** 
+	 * @brief Content read waiting to be delivered into the
+	 * browser (see DeliveryStage).
+	 */
+	public InboundQueue inbound;
+
+	/* delivery state (see DeliveryStage): bytes of a char split
+	 * across reads and whether the connection is queued */
+	final byte []             partialBytes   = new byte [16];
+	int                       partialCount;
+	boolean                   deliveryQueued;
+
+	/** 
+	 * @brief Traffic capture where bytes read and written are
+	 * recorded (null when capture is not enabled).
+	 */
+	public TrafficCapture capture;
+
+	/** 
+	 * @brief Set once close was requested (a connect still queued
+	 * is not done).
+	 */
+	public volatile boolean closed;
+
+	/** 
+	 * @brief Last time (milliseconds) content was read or written
+	 * (see ConnectionManager).
+	 */
+	public volatile long lastActivity;
+
+	/** 
+	 * @brief Size of the read buffer held by the connection
+	 * listener, as accounted by ConnectionManager.
+	 */
+	int readBuffer;
+
+	/** 
+	 * @brief Bytes queued to be sent, as accounted by
+	 * ConnectionManager.
+	 */
+	long pendingBytes;
+
+	/* command lane (see CommandScheduler): commands queued for
+	 * this connection with their priorities */
+	final ArrayDeque<Command> laneCommands   = new ArrayDeque<Command> ();
+	final ArrayDeque<Integer> lanePriorities = new ArrayDeque<Integer> ();
+	int                       lanePriority;
+	boolean                   laneQueued;
+	boolean                   laneBusy;
+	Command                   laneCurrent;
+	int                       laneCurrentPriority;
+
+	/* set by the current command to continue off the dispatcher
+	 * (the lane stays busy until it finishes, see
+	 * ConnectorRuntime.detach) */
+	Runnable                  laneDetached;
+
+	/** 
+	 * @brief How content read is passed into JavaScript (see
+	 * BridgeEncoding), from the bridgeEncoding member.
+	 */
+	public int bridge = BridgeEncoding.BASE64;
+
+	/** 
+	 * @brief Channel 0 parser (null unless the parseChannel0
+	 * member is enabled, see Channel0Parser).
+	 */
+	public Channel0Parser channel0;
+
 	/** 
 	 * @brief The connection id this socket state is bound to.
 	 */
@@ -38,6 +121,12 @@ public class SocketState {
 	 */
 	public JSObject browser;
 
+	/** 
+	 * @brief The core (applet instance) that created the
+	 * connection, where its commands run and events are notified.
+	 */
+	public ConnectorCore core;
+
 	/** 
 	 * @brief Allows to get the value of a member for the provided
 	 * connection.
@@ -65,6 +154,46 @@ public class SocketState {
 		return;
 	}
 
+	/** 
+	 * @brief Returns the encoder associated to the connection
+	 * encoding, creating it on first use. Unmappable content is
+	 * replaced, as String.getBytes does.
+	 *
+	 * @return The encoder or null if the encoding is not supported.
+	 */
+	public CharsetEncoder getEncoder () {
+		if (encoder != null)
+			return encoder;
+		try {
+			encoder = Charset.forName (encoding).newEncoder ()
+				.onMalformedInput (CodingErrorAction.REPLACE)
+				.onUnmappableCharacter (CodingErrorAction.REPLACE);
+		} catch (Exception ex) {
+			return null;
+		}
+		return encoder;
+	}
+
+	/** 
+	 * @brief Returns the decoder associated to the connection
+	 * encoding, creating it on first use. Malformed content is
+	 * replaced, as new String does.
+	 *
+	 * @return The decoder or null if the encoding is not supported.
+	 */
+	public CharsetDecoder getDecoder () {
+		if (decoder != null)
+			return decoder;
+		try {
+			decoder = Charset.forName (encoding).newDecoder ()
+				.onMalformedInput (CodingErrorAction.REPLACE)
+				.onUnmappableCharacter (CodingErrorAction.REPLACE);
+		} catch (Exception ex) {
+			return null;
+		}
+		return decoder;
+	}
+
 	/** 
 	 * @brief Allows to encode the provide value using current connection encoding..
 	 *
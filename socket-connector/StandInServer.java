@@ -0,0 +1,145 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import javax.net.ssl.*;
+
+/**
+ * @brief Local BEEP stand-in used for connector soak testing: it
+ * sends a BEEP greeting to each connection and then echoes back
+ * everything it receives.
+ *
+ * With TLS enabled each connection starts a server side handshake
+ * right after accept (the client is expected to call enableTLS as
+ * soon as it is connected), using a self-signed certificate created
+ * with the JDK keytool, and the greeting is sent after it.
+ *
+ * Usage: java StandInServer [port] [-tls]
+ */
+public class StandInServer extends Thread {
+
+	/**
+	 * @brief Greeting sent on each connection.
+	 */
+	public static final String GREETING_PAYLOAD = "Content-Type: application/beep+xml\r\n\r\n<greeting />\r\n";
+	public static final String GREETING         = "RPY 0 0 . 0 " + GREETING_PAYLOAD.length () + "\r\n" + GREETING_PAYLOAD + "END\r\n";
+
+	ServerSocket     server;
+	SSLSocketFactory tlsFactory;
+
+	/**
+	 * @brief Creates the server listening on the provided port (0
+	 * to use any free port, see getPort).
+	 *
+	 * @param port The port to listen on.
+	 * @param tls Enable TLS on each accepted connection.
+	 */
+	public StandInServer (int port, boolean tls) throws Exception {
+		server = new ServerSocket (port, 1024, InetAddress.getByName ("127.0.0.1"));
+		if (tls)
+			tlsFactory = createTLSFactory ();
+		setDaemon (true);
+		setName ("StandInServer");
+	}
+
+	public int getPort () {
+		return server.getLocalPort ();
+	}
+
+	public void run () {
+		while (true) {
+			try {
+				final Socket socket = server.accept ();
+				Thread handler = new Thread () {
+					public void run () {
+						serve (socket);
+					}
+				};
+				handler.setDaemon (true);
+				handler.start ();
+			} catch (IOException ex) {
+				return;
+			}
+		}
+	}
+
+	void serve (Socket socket) {
+		byte [] buffer = new byte [16384];
+		int     size;
+		try {
+			socket.setTcpNoDelay (true);
+			if (tlsFactory != null) {
+				SSLSocket tls = (SSLSocket) tlsFactory.createSocket (socket, null, socket.getPort (), true);
+				tls.setUseClientMode (false);
+				tls.setEnabledProtocols (tls.getSupportedProtocols ());
+				tls.startHandshake ();
+				socket = tls;
+			}
+			InputStream  in  = socket.getInputStream ();
+			OutputStream out = socket.getOutputStream ();
+			out.write (GREETING.getBytes ("US-ASCII"));
+			out.flush ();
+			while ((size = in.read (buffer)) > 0) {
+				out.write (buffer, 0, size);
+				out.flush ();
+			}
+		} catch (IOException ex) {
+			/* connection finished */
+		} finally {
+			try {socket.close ();} catch (IOException ex) {}
+		}
+		return;
+	}
+
+	/* creates a temporary self-signed key store with keytool */
+	static SSLSocketFactory createTLSFactory () throws Exception {
+		File   store    = File.createTempFile ("standin", ".p12");
+		String password = "standin";
+		store.delete ();
+		store.deleteOnExit ();
+
+		Process keytool = new ProcessBuilder (System.getProperty ("java.home") + File.separator + "bin" + File.separator + "keytool",
+						      "-genkeypair", "-alias", "standin", "-keyalg", "RSA", "-keysize", "2048",
+						      "-dname", "CN=localhost", "-validity", "2",
+						      "-storetype", "PKCS12", "-keystore", store.getPath (),
+						      "-storepass", password, "-keypass", password)
+			.redirectErrorStream (true).start ();
+		while (keytool.getInputStream ().read () != -1)
+			;
+		if (keytool.waitFor () != 0)
+			throw new IOException ("StandInServer: keytool failed to create the self-signed certificate");
+
+		KeyStore    keys = KeyStore.getInstance ("PKCS12");
+		InputStream in   = new FileInputStream (store);
+		try {
+			keys.load (in, password.toCharArray ());
+		} finally {
+			in.close ();
+		}
+		KeyManagerFactory kmf = KeyManagerFactory.getInstance (KeyManagerFactory.getDefaultAlgorithm ());
+		kmf.init (keys, password.toCharArray ());
+		SSLContext context = SSLContext.getInstance ("TLS");
+		context.init (kmf.getKeyManagers (), null, null);
+		return context.getSocketFactory ();
+	}
+
+	public static void main (String [] args) throws Exception {
+		int     port = 44010;
+		boolean tls  = false;
+		for (String arg : args) {
+			if (arg.equals ("-tls"))
+				tls = true;
+			else
+				port = Integer.parseInt (arg);
+		}
+		if (tls)
+			LoadGenerator.enableLegacyTLS ();
+
+		StandInServer server = new StandInServer (port, tls);
+		System.out.println ("StandInServer: listening on 127.0.0.1:" + server.getPort () + (tls ? " (TLS)" : ""));
+		server.run ();
+	}
+}
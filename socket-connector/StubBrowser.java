@@ -0,0 +1,161 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+import netscape.javascript.*;
+import java.util.*;
+
+/**
+ * @brief Browser stand-in used by tools to drive ConnectorCore
+ * without a real browser. It understands the scripts the connector
+ * evaluates (JavaSocketConnector.call/setMember/getMember), keeps
+ * connection members and forwards calls to a Handler.
+ */
+public class StubBrowser extends JSObject {
+
+	/**
+	 * @brief Receives JavaSocketConnector.call notifications.
+	 */
+	public interface Handler {
+		/**
+		 * @param conn_id The connection id.
+		 * @param method The handler called (onopen, onmessage, ...).
+		 * @param args The arguments (strings, base64 still encoded).
+		 *
+		 * @return The value returned to the connector.
+		 */
+		Object call (String conn_id, String method, String [] args);
+	}
+
+	/* handler receiving calls */
+	Handler handler;
+
+	/* connection members (conn_id -> member -> value) */
+	final Map<String, Map<String, Object>> members = new HashMap<String, Map<String, Object>> ();
+
+	/* global members (isReady) */
+	final Map<String, Object> globals = new HashMap<String, Object> ();
+
+	public StubBrowser (Handler _handler) {
+		handler = _handler;
+	}
+
+	/**
+	 * @brief Sets a member of a connection (as the JS object would
+	 * hold it, for example host, port or certTrustPolicy).
+	 */
+	public synchronized void setConnMember (String conn_id, String member, Object value) {
+		Map<String, Object> values = members.get (conn_id);
+		if (values == null) {
+			values = new HashMap<String, Object> ();
+			members.put (conn_id, values);
+		}
+		values.put (member, value);
+		return;
+	}
+
+	/**
+	 * @brief Gets a member of a connection.
+	 */
+	public synchronized Object getConnMember (String conn_id, String member) {
+		Map<String, Object> values = members.get (conn_id);
+		return values == null ? null : values.get (member);
+	}
+
+	/**
+	 * @brief Drops all members of a connection.
+	 */
+	public synchronized void removeConn (String conn_id) {
+		members.remove (conn_id);
+		return;
+	}
+
+	public Object eval (String script) {
+		int    start = script.indexOf ('(');
+		int    end   = script.lastIndexOf (')');
+		String name  = script.substring (0, start).trim ();
+		List<String> args = split (script.substring (start + 1, end));
+
+		if (name.equals ("JavaSocketConnector.setMember")) {
+			setConnMember (args.get (0), args.get (1), value (args.get (2)));
+			return null;
+		}
+		if (name.equals ("JavaSocketConnector.getMember"))
+			return getConnMember (args.get (0), args.get (1));
+		if (name.equals ("JavaSocketConnector.call"))
+			return handler.call (args.get (0), args.get (1), args.subList (2, args.size ()).toArray (new String [0]));
+		throw new JSException ("StubBrowser: unsupported script: " + script);
+	}
+
+	public Object call (String method, Object [] args) {
+		String [] values = new String [args.length - 2];
+		for (int i = 2; i < args.length; i++)
+			values[i - 2] = args[i] == null ? null : args[i].toString ();
+		return handler.call (args[0].toString (), args[1].toString (), values);
+	}
+
+	public Object getMember (String name) {
+		/* JavaSocketConnector global object */
+		return this;
+	}
+
+	public void setMember (String name, Object value) {
+		synchronized (this) {
+			globals.put (name, value);
+		}
+		return;
+	}
+
+	public void removeMember (String name) {}
+	public Object getSlot (int index) { return null; }
+	public void setSlot (int index, Object value) {}
+
+	/* split call arguments honouring quotes, removing them */
+	static List<String> split (String text) {
+		List<String>  result = new ArrayList<String> ();
+		StringBuilder token  = new StringBuilder ();
+		char          quote  = 0;
+		boolean       quoted = false;
+		char          c;
+
+		for (int i = 0; i < text.length (); i++) {
+			c = text.charAt (i);
+			if (quote != 0) {
+				if (c == '\\' && i + 1 < text.length ()) {
+					/* keep escapes as they are */
+					token.append (c).append (text.charAt (++i));
+				} else if (c == quote) {
+					quote = 0;
+				} else {
+					token.append (c);
+				}
+			} else if (c == '\'' || c == '"') {
+				/* quoted values are kept untrimmed */
+				token.setLength (0);
+				quote  = c;
+				quoted = true;
+			} else if (c == ',') {
+				result.add (quoted ? token.toString () : token.toString ().trim ());
+				token.setLength (0);
+				quoted = false;
+			} else if (! quoted) {
+				token.append (c);
+			}
+		}
+		if (quoted || token.toString ().trim ().length () > 0 || result.size () > 0)
+			result.add (quoted ? token.toString () : token.toString ().trim ());
+		return result;
+	}
+
+	/* convert unquoted values into numbers/booleans */
+	static Object value (String text) {
+		if (text.equals ("true") || text.equals ("false"))
+			return Boolean.valueOf (text);
+		try {
+			return Integer.valueOf (text);
+		} catch (NumberFormatException ex) {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.security.*;
+import javax.net.ssl.*;
+
+/**
+ * @brief Keeps the TLS material that is the same for every
+ * connection (default trust store and a seeded SecureRandom) so
+ * EnableTLSCommand does not load it on each handshake.
+ *
+ * prewarm () loads it on a low priority background thread, also
+ * forcing JSSE class loading and provider setup, so the first
+ * enableTLS costs about the same as the next ones.
+ */
+public class TLSContextCache implements Runnable {
+
+	TrustManagerFactory trustManagerFactory;
+	SecureRandom        random;
+	Exception           error;
+	boolean             loading;
+	Thread              thread;
+
+	/**
+	 * @brief Starts loading the TLS material in background (does
+	 * nothing if it is already loaded or being loaded).
+	 */
+	public synchronized void prewarm () {
+		if (loading || trustManagerFactory != null)
+			return;
+		loading = true;
+		thread  = new Thread (this, "JavaSocketConnector-tls-prewarm");
+		thread.setDaemon (true);
+		thread.setPriority (Thread.MIN_PRIORITY);
+		thread.start ();
+		return;
+	}
+
+	public void run () {
+		load ();
+	}
+
+	/**
+	 * @brief Returns the trust manager factory initialized with
+	 * the default trust store, waiting for a prewarm in progress
+	 * or loading it now.
+	 */
+	public TrustManagerFactory getTrustManagerFactory () throws Exception {
+		synchronized (this) {
+			while (loading)
+				wait ();
+			if (trustManagerFactory != null)
+				return trustManagerFactory;
+			loading = true;
+		}
+		load ();
+		synchronized (this) {
+			if (trustManagerFactory == null)
+				throw error;
+			return trustManagerFactory;
+		}
+	}
+
+	/**
+	 * @brief Returns the seeded SecureRandom (only valid after
+	 * getTrustManagerFactory).
+	 */
+	public synchronized SecureRandom getRandom () {
+		return random;
+	}
+
+	/* loads TLS material, called with loading flag set */
+	void load () {
+		TrustManagerFactory tmf = null;
+		SecureRandom        rnd = null;
+		Exception           ex  = null;
+		try {
+			/* seed entropy */
+			rnd = new SecureRandom ();
+			rnd.nextBytes (new byte [32]);
+
+			/* parse default trust store */
+			tmf = TrustManagerFactory.getInstance (TrustManagerFactory.getDefaultAlgorithm ());
+			tmf.init ((KeyStore) null);
+
+			/* load provider and handshake classes */
+			SSLContext context = SSLContext.getInstance ("TLSv1");
+			context.init (null, tmf.getTrustManagers (), rnd);
+			context.getSocketFactory ().getSupportedCipherSuites ();
+			context.createSSLEngine ().setUseClientMode (true);
+		} catch (Exception e) {
+			tmf = null;
+			ex  = e;
+		}
+
+		synchronized (this) {
+			trustManagerFactory = tmf;
+			random              = rnd;
+			error               = ex;
+			loading             = false;
+			notifyAll ();
+		}
+		return;
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * @brief Fixed size, memory mapped ring file where inbound and
+ * outbound bytes of a connection are recorded with a timestamp so
+ * they can be inspected or replayed later (see CaptureReplay).
+ *
+ * File layout: a HEADER_SIZE header followed by the data ring. Each
+ * record is a RECORD_HEADER_SIZE header (magic, sequence, time in
+ * nanoseconds since the capture was opened, direction and length)
+ * followed by the payload. Records wrap byte by byte at the end of
+ * the ring, so the oldest record is located by scanning for the
+ * record magic from the write position. Payloads bigger than a
+ * quarter of the ring are split across consecutive records (same
+ * time and direction), so every byte kept is replayed.
+ */
+public class TrafficCapture {
+
+	/**
+	 * @brief Direction of bytes read from the socket.
+	 */
+	public static final byte INBOUND  = 0;
+	/**
+	 * @brief Direction of bytes written to the socket.
+	 */
+	public static final byte OUTBOUND = 1;
+
+	static final int FILE_MAGIC         = 0x4A534346; /* JSCF */
+	static final int RECORD_MAGIC       = 0x4A534352; /* JSCR */
+	static final int VERSION            = 1;
+	static final int HEADER_SIZE        = 64;
+	static final int RECORD_HEADER_SIZE = 21;
+
+	/* header offsets */
+	static final int H_MAGIC    = 0;
+	static final int H_VERSION  = 4;
+	static final int H_CAPACITY = 8;
+	static final int H_HEAD     = 12;
+	static final int H_WRITTEN  = 16;
+	static final int H_SEQ      = 24;
+	static final int H_START    = 28;
+	static final int H_PORT     = 36;
+
+	/* the ring (data area of the mapped file) */
+	MappedByteBuffer map;
+	int              capacity;
+	int              head;
+	long             written;
+	int              seq;
+	long             startNanos;
+	byte []          scratch = new byte [RECORD_HEADER_SIZE];
+	boolean          closed;
+
+	/**
+	 * @brief File where the capture is being written.
+	 */
+	public File file;
+
+	/**
+	 * @brief Creates (or truncates) the capture file and maps it.
+	 *
+	 * @param dir The directory where the capture is placed.
+	 * @param conn_id The connection id (its digits name the file,
+	 * the id comes from the page).
+	 * @param port The remote port (stored in the header).
+	 * @param size The size of the data ring in bytes.
+	 */
+	public static TrafficCapture open (File dir, String conn_id, int port, int size) throws IOException {
+		TrafficCapture   capture = new TrafficCapture ();
+		RandomAccessFile raf;
+
+		capture.file     = new File (dir, "jsc-capture-" + digits (conn_id) + "-" + System.currentTimeMillis () + ".ring");
+		capture.capacity = size;
+		raf              = new RandomAccessFile (capture.file, "rw");
+		try {
+			raf.setLength (HEADER_SIZE + size);
+			capture.map = raf.getChannel ().map (FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + size);
+		} finally {
+			/* the mapping remains valid after closing the file */
+			raf.close ();
+		}
+
+		capture.startNanos = System.nanoTime ();
+		capture.map.putInt  (H_MAGIC, FILE_MAGIC);
+		capture.map.putInt  (H_VERSION, VERSION);
+		capture.map.putInt  (H_CAPACITY, size);
+		capture.map.putLong (H_START, System.currentTimeMillis ());
+		capture.map.putInt  (H_PORT, port);
+		capture.updateHeader ();
+		return capture;
+	}
+
+	/* digits of the provided value ("0" if none), so a file
+	 * name can't point elsewhere */
+	static String digits (String value) {
+		StringBuilder result = new StringBuilder ();
+		for (int iterator = 0; value != null && iterator < value.length () && result.length () < 20; iterator++) {
+			if (value.charAt (iterator) >= '0' && value.charAt (iterator) <= '9')
+				result.append (value.charAt (iterator));
+		}
+		return result.length () == 0 ? "0" : result.toString ();
+	}
+
+	/**
+	 * @brief Records the provided bytes (split into records of
+	 * up to a quarter of the ring).
+	 *
+	 * @param direction INBOUND or OUTBOUND.
+	 * @param data The buffer holding the bytes.
+	 * @param offset Where the bytes start inside data.
+	 * @param length The amount of bytes to record.
+	 */
+	public synchronized void record (byte direction, byte [] data, int offset, int length) {
+		if (closed)
+			return;
+		long time  = System.nanoTime () - startNanos;
+		int  limit = Math.max (1, capacity / 4);
+		int  chunk;
+
+		do {
+			chunk = Math.min (length, limit);
+
+			/* build record header */
+			putInt (scratch, 0, RECORD_MAGIC);
+			putInt (scratch, 4, seq);
+			putInt (scratch, 8, (int) (time >>> 32));
+			putInt (scratch, 12, (int) time);
+			scratch[16] = direction;
+			putInt (scratch, 17, chunk);
+
+			put (scratch, 0, RECORD_HEADER_SIZE);
+			put (data, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+			seq++;
+		} while (length > 0);
+		updateHeader ();
+		return;
+	}
+
+	/**
+	 * @brief Stops recording. The file stays in place.
+	 */
+	public synchronized void close () {
+		if (closed)
+			return;
+		closed = true;
+		updateHeader ();
+		map.force ();
+		return;
+	}
+
+	/* copy bytes into the ring wrapping at its end */
+	void put (byte [] data, int offset, int length) {
+		int chunk;
+		while (length > 0) {
+			chunk = Math.min (length, capacity - head);
+			map.position (HEADER_SIZE + head);
+			map.put (data, offset, chunk);
+			offset  += chunk;
+			length  -= chunk;
+			written += chunk;
+			head     = (head + chunk) % capacity;
+		}
+		return;
+	}
+
+	void updateHeader () {
+		map.putInt  (H_HEAD, head);
+		map.putLong (H_WRITTEN, written);
+		map.putInt  (H_SEQ, seq);
+		return;
+	}
+
+	static void putInt (byte [] b, int pos, int value) {
+		b[pos]     = (byte) (value >>> 24);
+		b[pos + 1] = (byte) (value >>> 16);
+		b[pos + 2] = (byte) (value >>> 8);
+		b[pos + 3] = (byte) value;
+		return;
+	}
+
+	/**
+	 * @brief A record read from a capture file.
+	 */
+	public static class Record {
+		/**
+		 * @brief INBOUND or OUTBOUND.
+		 */
+		public byte    direction;
+		/**
+		 * @brief Nanoseconds since the capture was opened.
+		 */
+		public long    time;
+		/**
+		 * @brief The recorded bytes.
+		 */
+		public byte [] data;
+	}
+
+	/**
+	 * @brief Reads all records still available in a capture file,
+	 * oldest first.
+	 *
+	 * @param file The capture file to read.
+	 *
+	 * @return The list of records found.
+	 */
+	public static List<Record> read (File file) throws IOException {
+		List<Record>     records = new ArrayList<Record> ();
+		RandomAccessFile raf     = new RandomAccessFile (file, "r");
+		ByteBuffer       buf;
+		try {
+			buf = raf.getChannel ().map (FileChannel.MapMode.READ_ONLY, 0, raf.length ());
+		} finally {
+			raf.close ();
+		}
+
+		if (buf.getInt (H_MAGIC) != FILE_MAGIC)
+			throw new IOException ("Not a capture file: " + file);
+
+		int  capacity = buf.getInt (H_CAPACITY);
+		int  head     = buf.getInt (H_HEAD);
+		long written  = buf.getLong (H_WRITTEN);
+		int  lastSeq  = buf.getInt (H_SEQ) - 1;
+		int  available = (int) Math.min (written, capacity);
+		int  start     = written > capacity ? head : 0;
+
+		/* locate oldest complete record: after a wrap the write
+		 * position may point into the middle of a record */
+		int skip = 0;
+		while (skip + RECORD_HEADER_SIZE <= available) {
+			if (getInt (buf, capacity, start + skip) == RECORD_MAGIC
+			    && _chainOk (buf, capacity, start + skip, available - skip, lastSeq))
+				break;
+			skip++;
+		}
+
+		int pos  = start + skip;
+		int left = available - skip;
+		while (left >= RECORD_HEADER_SIZE && getInt (buf, capacity, pos) == RECORD_MAGIC) {
+			Record record    = new Record ();
+			int    length    = getInt (buf, capacity, pos + 17);
+			record.time      = ((long) getInt (buf, capacity, pos + 8) << 32) | (getInt (buf, capacity, pos + 12) & 0xffffffffL);
+			record.direction = get (buf, capacity, pos + 16);
+			if (length < 0 || RECORD_HEADER_SIZE + length > left)
+				break;
+			record.data = new byte [length];
+			for (int i = 0; i < length; i++)
+				record.data[i] = get (buf, capacity, pos + RECORD_HEADER_SIZE + i);
+			records.add (record);
+
+			pos  += RECORD_HEADER_SIZE + length;
+			left -= RECORD_HEADER_SIZE + length;
+		}
+		return records;
+	}
+
+	/* check that records starting at pos chain with consecutive
+	 * sequence numbers up to the last one written */
+	static boolean _chainOk (ByteBuffer buf, int capacity, int pos, int left, int lastSeq) {
+		int seq = getInt (buf, capacity, pos + 4);
+		int length;
+		while (left >= RECORD_HEADER_SIZE) {
+			if (getInt (buf, capacity, pos) != RECORD_MAGIC || getInt (buf, capacity, pos + 4) != seq)
+				return false;
+			length = getInt (buf, capacity, pos + 17);
+			if (length < 0 || RECORD_HEADER_SIZE + length > left)
+				return false;
+			pos  += RECORD_HEADER_SIZE + length;
+			left -= RECORD_HEADER_SIZE + length;
+			seq++;
+		}
+		return left == 0 && seq - 1 == lastSeq;
+	}
+
+	static byte get (ByteBuffer buf, int capacity, int pos) {
+		return buf.get (HEADER_SIZE + (pos % capacity));
+	}
+
+	static int getInt (ByteBuffer buf, int capacity, int pos) {
+		return ((get (buf, capacity, pos) & 0xff) << 24) | ((get (buf, capacity, pos + 1) & 0xff) << 16)
+			| ((get (buf, capacity, pos + 2) & 0xff) << 8) | (get (buf, capacity, pos + 3) & 0xff);
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+import java.io.*;
+import java.net.*;
+
+/**
+ * @brief Creates the sockets used by the connector connections
+ * (see SocketCommand and ConnectorCore.transport). DIRECT opens a
+ * plain TCP connection, EmulatedTransport runs connections through
+ * an emulated network link.
+ *
+ * The socket returned must be connected, TLS is layered on top of it
+ * by EnableTLSCommand.
+ */
+public interface TransportFactory {
+
+	/**
+	 * @brief Plain TCP connections.
+	 */
+	public static final TransportFactory DIRECT = new TransportFactory () {
+		public Socket createSocket (String host, int port) throws IOException {
+			return new Socket (host, port);
+		}
+	};
+
+	/**
+	 * @brief Creates a socket connected to the provided host and
+	 * port.
+	 */
+	public Socket createSocket (String host, int port) throws IOException;
+}
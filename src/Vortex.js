@@ -132,6 +132,7 @@ Vortex.load = function (basepath) {
     Vortex.loadJs (basepath + "VortexSASLEngine.js");
     Vortex.loadJs (basepath + "VortexSASLEnginePlain.js");
     Vortex.loadJs (basepath + "VortexSASLEngineAnonymous.js");
+    Vortex.loadJs (basepath + "VortexSASLEngineJSC.js");
 
     return;
 };
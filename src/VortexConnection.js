@@ -771,6 +771,8 @@ VortexConnection.prototype.saslAuth = function (params) {
     } /* end if */
 
     params.saslEngine =	new VortexSASLEngine (params);
+    if (! params.saslEngine.serverName)
+	params.saslEngine.serverName = this.serverName ? this.serverName : this.host;
     if (! params.saslEngine.clientInit ()) {
 	/* failed to init SASL initial step, notify error */
 	var saslData = {
@@ -863,7 +865,23 @@ VortexConnection.prototype.saslAuth._frameReceived = function (frameReceived) {
 
     /* provide content received to the saslEngine */
     Vortex.log ("VortexConnection.saslAuth._frameReceived: providing blob received to SASL engine: '" + node.content + "'");
-    this.saslEngine.nextStep (node.content);
+    this.saslEngine.blob = null;
+    if (! this.saslEngine.nextStep (node.content)) {
+	/* failed to process server blob (i.e. server proof not
+	 * verified) */
+	var saslData = {
+	    conn : this.conn,
+	    status : false,
+	    statusMsg :	"Failed to complete SASL authentication, error found: " + this.saslEngine.statusMsg
+	};
+
+	/* nullify engine */
+	this.saslEngine = null;
+
+	/* notify connection error */
+	VortexEngine.apply (this.onAuthFinishedHandler, this.onAuthFinishedContext, [saslData]);
+	return;
+    } /* end if */
 
     /* check for status attribute */
     for (var position in node.attrs) {
@@ -879,6 +897,16 @@ VortexConnection.prototype.saslAuth._frameReceived = function (frameReceived) {
 		    statusMsg :	"Authentication OK"
 		};
 
+		/* server signaled complete but the mechanism did not
+		 * verify it (i.e. server proof missing) */
+		if (! this.saslEngine.status) {
+		    saslData.status    = false;
+		    saslData.statusMsg = "Failed to complete SASL authentication, server completion was not verified by " + this.saslEngine.mech;
+		    this.saslEngine    = null;
+		    VortexEngine.apply (this.onAuthFinishedHandler, this.onAuthFinishedContext, [saslData]);
+		    return;
+		} /* end if */
+
 		/* configure connection */
 		this.saslEngine.configureCredentials (this.conn);
 
@@ -907,7 +935,10 @@ VortexConnection.prototype.saslAuth._frameReceived = function (frameReceived) {
 
 	    } else if (node.attrs[position].value == 'continue') {
 
-		/* SASL profile request to continue with the process: still not implemented */
+		/* SASL profile request to continue with the process:
+		 * send next blob produced by the mechanism */
+		if (this.saslEngine.blob != null)
+		    frameReceived.channel.sendMSG ("<blob>" + this.saslEngine.blob + "</blob>");
 
 	    } else {
 		/* undefined status */
@@ -917,6 +948,10 @@ VortexConnection.prototype.saslAuth._frameReceived = function (frameReceived) {
 	} /* end if */
     } /* end for */
 
+    /* no status attribute: exchange continues */
+    if (this.saslEngine.blob != null)
+	frameReceived.channel.sendMSG ("<blob>" + this.saslEngine.blob + "</blob>");
+
     return;
 };
 
@@ -1281,6 +1316,10 @@ VortexConnection.prototype._onStart = function () {
  * module to notify a connection close.
  */
 VortexConnection.prototype._onStop = function () {
+    /* greetings sent but the peer ones not received yet: the
+     connection creation is still to be reported */
+    var creating = this._transport != null && this.greetingsSent && this.greetingsPending;
+
     /* call to shutdown */
     if (this.isReady)
 	this.shutdown ("Unexpected connection close received. Remote BEEP peer side is down or has closed the connection.");
@@ -1288,6 +1327,10 @@ VortexConnection.prototype._onStop = function () {
 	/* do connection shutdown but expected so, no error is imported */
 	this.shutdown ();
     }
+
+    /* report connection not created */
+    if (creating)
+	this._reportConnCreated ();
     return;
 };
 
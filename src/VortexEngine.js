@@ -568,6 +568,38 @@ VortexEngine.getFrame = function (connection, data) {
     return frameList;
 };
 
+/**
+ * @internal Returns the xmlNode for the content of the provided
+ * channel 0 frame: the one already parsed by the transport if
+ * available (JavaSocketConnector with parseChannel0 enabled, see
+ * VortexTCPTransport.jscParseChannel0), otherwise the frame content
+ * is parsed.
+ *
+ * @param conn {VortexConnection} The connection receiving the frame.
+ *
+ * @param frame {VortexFrame} The channel 0 frame received.
+ */
+VortexEngine.channel0Parse = function (conn, frame) {
+    var parsed = conn._transport ? conn._transport.channel0Parsed : null;
+    if (parsed && parsed.length > 0) {
+	/* documents are queued in stream order: older ones (not
+	 * used) are dropped */
+	var key = frame.type + " " + frame.msgno + " " + frame.seqno;
+	for (var iterator = 0; iterator < parsed.length; iterator++) {
+	    if (parsed[iterator].key == key) {
+		var entry = parsed[iterator];
+		parsed.splice (0, iterator + 1);
+		var node = VortexXMLEngine.parseFromCompact (entry.data);
+		if (node != null)
+		    return node;
+		break;
+	    } /* end if */
+	} /* end for */
+    } /* end if */
+
+    return VortexXMLEngine.parseFromString (frame.content);
+};
+
 /**
  * @internal Handler used to process all messages
  * received over channel 0 for a particular connection.
@@ -601,7 +633,7 @@ VortexEngine.channel0Received = function (frameReceived) {
     } /* end if */
 
     /* normal processing for BEEP channel 0 */
-    var node = VortexXMLEngine.parseFromString (frame.content);
+    var node = VortexEngine.channel0Parse (this.conn, frame);
 
     /* check result returned before continue */
     if (node == null) {
@@ -794,7 +826,7 @@ VortexEngine.channel0PrepareConnection = function (frame)
     }
 
     /* now do XML processing */
-    var node = VortexXMLEngine.parseFromString (frame.content);
+    var node = VortexEngine.channel0Parse (this.conn, frame);
 
     /* check result (node reference) */
     if (node == null) {
@@ -22,6 +22,13 @@
  *
  * @param params.password {string} (Optional) Password associated to the the authentication user.
  *
+ * @param params.serverName {String} (Optional) Server name used by
+ * DIGEST-MD5 digest-uri (defaults to the connection serverName or
+ * host, see VortexConnection.saslAuth).
+ *
+ * SCRAM-SHA-1, SCRAM-SHA-256 and DIGEST-MD5 are available when the
+ * JavaSocketConnector applet is ready (computed by the applet, see
+ * VortexSASLEngineJSC.js).
  */
 function VortexSASLEngine (params) {
     /* record initial data provided (copy all attribues) */
@@ -30,6 +37,7 @@ function VortexSASLEngine (params) {
     this.authorizationId  = params.authorizationId;
     this.password         = params.password;
     this.anonymousToken   = params.anonymousToken;
+    this.serverName       = params.serverName;
 
     /* current internal status */
     this.blob             = null;
@@ -39,6 +47,11 @@ function VortexSASLEngine (params) {
     /* register supported mechanism */
     this.addMech (VortexSASL_PLAIN);
     this.addMech (VortexSASL_ANONYMOUS);
+    if (typeof JavaSocketConnector != "undefined" && JavaSocketConnector.isReady) {
+	this.addMech (VortexSASL_JSC ("SCRAM-SHA-1"));
+	this.addMech (VortexSASL_JSC ("SCRAM-SHA-256"));
+	this.addMech (VortexSASL_JSC ("DIGEST-MD5"));
+    }
 };
 
 /**
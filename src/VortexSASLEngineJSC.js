@@ -0,0 +1,80 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+/**
+ * @internal SCRAM-SHA-1, SCRAM-SHA-256 and DIGEST-MD5 support for
+ * VortexSASLEngine, computed by the JavaSocketConnector applet (see
+ * SASLHelper.java) so salted password derivation (thousands of HMAC
+ * iterations), HMAC and MD5 do not run inside the javascript
+ * engine. Mechanisms are only registered when the applet is ready.
+ *
+ * This function is not directly used by the API consumer.
+ * Check \ref VortexSASLEngine.
+ *
+ * @param mechName {String} The mechanism to create a definition for.
+ */
+function VortexSASL_JSC (mechName) {
+    return {
+	/**
+	 * SASL profile unique name identifying the mechanism.
+	 */
+	name: mechName,
+	/**
+	 * Check input: authenticationId and password are required.
+	 */
+	checkInput: function (saslEngine) {
+	    if (! VortexEngine.checkReference (saslEngine, "authenticationId")) {
+		saslEngine.statusMsg = "Unable to start " + mechName + " mechanism, authenticationId attribute is missing";
+		return false;
+	    }
+	    if (! VortexEngine.checkReference (saslEngine, "password")) {
+		saslEngine.statusMsg = "Unable to start " + mechName + " mechanism, password attribute is missing";
+		return false;
+	    }
+	    return true;
+	},
+	/**
+	 * Starts the applet session and produces the initial blob
+	 * (empty for DIGEST-MD5, which waits for the server
+	 * challenge).
+	 */
+	initMech: function (saslEngine) {
+	    saslEngine.session = JavaSocketConnector.saslStart (mechName, saslEngine.authenticationId, saslEngine.password,
+								saslEngine.authorizationId, saslEngine.serverName);
+	    if (saslEngine.session == null) {
+		saslEngine.statusMsg = "Unable to start " + mechName + " mechanism, not supported by the connector";
+		return false;
+	    }
+	    return this.nextStep (null, saslEngine);
+	},
+	/**
+	 * Provides the server blob to the applet session, leaving
+	 * the next blob to send (if any) in saslEngine.blob. Status
+	 * is flagged once the server proof was verified.
+	 */
+	nextStep: function (blob, saslEngine) {
+	    saslEngine.blob = JavaSocketConnector.saslStep (saslEngine.session, blob);
+	    if (saslEngine.blob == null) {
+		saslEngine.status    = false;
+		saslEngine.statusMsg = JavaSocketConnector.saslError (saslEngine.session);
+		return false;
+	    }
+	    saslEngine.status = JavaSocketConnector.saslComplete (saslEngine.session);
+	    if (saslEngine.status)
+		saslEngine.statusMsg = "Authentication OK";
+	    return true;
+	},
+	/**
+	 * Fills the item with the credentials used.
+	 */
+	configureCredentials: function (saslEngine, item) {
+	    item.isAuthenticated       = true;
+	    item.authorizationId       = saslEngine.authorizationId ? saslEngine.authorizationId : saslEngine.authenticationId;
+	    item.authenticationId      = saslEngine.authenticationId;
+	    Vortex.log ("VortexSASL_JSC.configureCredentials: storing user credentials: " + item.authorizationId + ", authentication: " + item.authenticationId);
+	    return true;
+	}
+    };
+};
@@ -92,6 +92,14 @@ function VortexTCPTransport () {
  */
 VortexTCPTransport.useTransport = 3;
 
+/**
+ * @brief When the JavaSocketConnector transport is used, request the
+ * applet to parse channel 0 documents (greetings, start, close...)
+ * in the read path, delivering them already parsed (see
+ * VortexEngine.channel0Parse). Disabled by default.
+ */
+VortexTCPTransport.jscParseChannel0 = false;
+
 function VortexDetectTransport () {
     if (typeof WebSocket == "function")
 	VortexTCPTransport.useTransport = 3;
@@ -526,7 +534,7 @@ function VortexJSCConnect (host, port) {
     Vortex.log ("Creating connection with " + host + ":" + port + ", using JSC interface..");
 
     /* connect */
-    this.socket = new JavaSocketConnector ({host: host, port: port});
+    this.socket = new JavaSocketConnector ({host: host, port: port, parseChannel0: VortexTCPTransport.jscParseChannel0});
 
     /* configure on open handler and the transport context  */
     this.socket.transport = this;
@@ -534,6 +542,23 @@ function VortexJSCConnect (host, port) {
     this.socket.onmessage = VortexJSCConnect.onmessage;
     this.socket.onclose   = VortexJSCConnect.onclose;
     this.socket.onlog     = VortexJSCConnect.onlog;
+    this.socket.onchannel0 = VortexJSCConnect.onchannel0;
+
+    /* channel 0 documents parsed by the applet (see
+     VortexEngine.channel0Parse) */
+    this.channel0Parsed   = [];
+
+    /* notify connection ready without waiting for onopen: the
+     applet queues content sent (greetings) while connecting and
+     writes it once connected. Failures are reported by onopen. The
+     start handler is notified once (see VortexJSCConnect.start). */
+    this.startNotified = false;
+    var socket = this.socket;
+    setTimeout (function () {
+	if (socket.readyState != 2)
+	    VortexJSCConnect.start (socket.transport, false);
+	socket = null;
+    }, 1);
 
     /* return socket created */
     return this.socket;
@@ -543,17 +568,40 @@ VortexJSCConnect.onopen = function () {
     /* under this handler "this" keyword points to the socket object */
     if (this.readyState == 1) {
 	Vortex.log ("Connection OK, now proceed..: " + this.host + ":" + this.port);
-    } else {
-	Vortex.error ("Failed to connect to remote host: " + this.host + ":" + this.port);
-	this.transport._reportError ("Failed to connect to remote host, error was: " + this.connectError);
+	return;
     }
 
-    /* notify connection ready at this point because firefox socket
-     support do not notify it until data comes from the server. */
-    VortexEngine.apply (this.transport.onStartHandler, this.transport.onStartObject, [], true);
+    Vortex.error ("Failed to connect to remote host: " + this.host + ":" + this.port);
+    this.transport._reportError ("Failed to connect to remote host, error was: " + this.connectError);
+
+    /* not started yet: start now so the greetings send fails and
+     the connection is reported as not created */
+    if (VortexJSCConnect.start (this.transport, true))
+	return;
+
+    /* already started (greetings queued and dropped by the
+     applet): notify the connection is lost */
+    this.transport.onStopHandler.apply (this.transport.onStopObject, [this.transport.onStopObject]);
     return;
 };
 
+/**
+ * @internal Notifies the start handler of the provided transport
+ * unless it was already notified.
+ *
+ * @param transport The transport to notify.
+ * @param deffer Notify from a timeout (see VortexEngine.apply).
+ *
+ * @return true if the handler was notified, otherwise false.
+ */
+VortexJSCConnect.start = function (transport, deffer) {
+    if (transport.startNotified)
+	return false;
+    transport.startNotified = true;
+    VortexEngine.apply (transport.onStartHandler, transport.onStartObject, [], deffer);
+    return true;
+};
+
 /**
  * @internal Handler called eacy time some content is received on the socket.
  */
@@ -563,6 +611,20 @@ VortexJSCConnect.onmessage = function (message) {
     this.transport.onReadHandler.apply (this.transport.onReadObject, [this.transport.onReadObject, message]);
 };
 
+/**
+ * @internal Handler called with each channel 0 document parsed by
+ * the applet, before the content carrying its frame is received.
+ */
+VortexJSCConnect.onchannel0 = function (document) {
+    var index = document.indexOf ("\0");
+    if (index == -1)
+	return;
+    this.transport.channel0Parsed.push ({
+	key  : document.substring (0, index),
+	data : document.substring (index + 1)
+    });
+};
+
 /**
  * @internal Handler to receive all java socket connector work.
  */
@@ -615,8 +677,9 @@ function VortexJSCisOK () {
 
     /* Vortex.log ("Checking socket ready state: " + this.socket.readyState); */
 
-    /* check that the socket is in readyState == OPEN */
-    return (this.socket.readyState == 1);
+    /* check that the socket is in readyState == CONNECTING (content
+     is queued) or OPEN */
+    return (this.socket.readyState != 2);
 }
 
 /**
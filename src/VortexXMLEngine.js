@@ -128,6 +128,81 @@ VortexXMLEngine.parseFromString = function (data) {
     return result;
 };
 
+/**
+ * @internal Builds the xmlNode (same structure produced by \ref
+ * VortexXMLEngine.parseFromString) from the compact form produced
+ * by the JavaSocketConnector applet when it parses channel 0
+ * documents (see Channel0Parser.java): fields separated by \0,
+ * "?name" followed by its value (xml header), "<name" (node start),
+ * "@name" followed by its value (attribute), "#text" (node content)
+ * and the node end: ">" (haveChilds true), "/" (haveChilds false)
+ * or "." (haveChilds not set).
+ *
+ * @param data {String} The compact document.
+ *
+ * @return {xmlNode} The root node or null if it fails.
+ */
+VortexXMLEngine.parseFromCompact = function (data) {
+    var fields  = data.split ("\0");
+    var stack   = [];
+    var headers = {};
+    var root    = null;
+    var node;
+    var field;
+
+    for (var iterator = 0; iterator < fields.length; iterator++) {
+	field = fields[iterator];
+	switch (field.charAt (0)) {
+	case '?':
+	    if (root != null || iterator + 1 >= fields.length)
+		return null;
+	    headers[field.substring (1)] = fields[++iterator];
+	    break;
+	case '<':
+	    node = VortexXMLEngine.createNode (field.substring (1));
+	    if (stack.length > 0) {
+		VortexXMLEngine.setChild (stack[stack.length - 1], node);
+	    } else if (root == null) {
+		root = node;
+	    } else {
+		return null;
+	    }
+	    stack.push (node);
+	    break;
+	case '@':
+	    if (stack.length == 0 || iterator + 1 >= fields.length)
+		return null;
+	    stack[stack.length - 1].attrs.push ({
+		name  : field.substring (1),
+		value : fields[++iterator]
+	    });
+	    break;
+	case '#':
+	    if (stack.length == 0)
+		return null;
+	    stack[stack.length - 1].content = field.substring (1);
+	    break;
+	case '>':
+	case '/':
+	case '.':
+	    if (stack.length == 0 || field.length != 1)
+		return null;
+	    node = stack.pop ();
+	    if (field != '.')
+		node.haveChilds = (field == '>');
+	    break;
+	default:
+	    return null;
+	}
+    }
+
+    if (stack.length != 0 || root == null)
+	return null;
+    for (var name in headers)
+	root[name] = headers[name];
+    return root;
+};
+
 VortexXMLEngine.parseXMLNode = function (data, parentNode) {
     var iterator;
 
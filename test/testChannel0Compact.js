@@ -0,0 +1,159 @@
+/**
+ ** Copyright (C) 2025 Advanced Software Production Line, S.L.
+ ** See license.txt or http://www.aspl.es/vortex
+ **/
+
+/**
+ * @brief Checks the channel 0 documents parsed by the
+ * JavaSocketConnector applet (Channel0Parser.java, compact form read
+ * by VortexXMLEngine.parseFromCompact) produce the same xmlNode tree
+ * as VortexXMLEngine.parseFromString, for the documents below.
+ *
+ * Usage (from the top directory, once the connector and its tools
+ * are compiled, make all tools):
+ *
+ *   node test/testChannel0Compact.js [connector classes classpath]
+ *
+ * Exits with status 1 if any document differs.
+ */
+var fs           = require ("fs");
+var path         = require ("path");
+var vm           = require ("vm");
+var childProcess = require ("child_process");
+
+var documents = [
+    /* usual channel 0 documents */
+    "<greeting />\r\n",
+    "<greeting>\r\n  <profile uri='http://iana.org/beep/TLS' />\r\n  <profile uri='http://iana.org/beep/SASL/PLAIN' />\r\n</greeting>\r\n",
+    "<greeting features='x-vortex' localize='es-ES'></greeting>",
+    "<start number='1' serverName='example.com'>\r\n   <profile uri='http://iana.org/beep/SASL/PLAIN'><![CDATA[<blob status='continue'/>]]></profile>\r\n</start>\r\n",
+    "<profile uri='http://iana.org/beep/TLS' />\r\n",
+    "<profile uri='http://iana.org/beep/TLS'><ready /></profile>",
+    "<close number='1' code='200' />\r\n",
+    "<ok />\r\n",
+    "<error code='550'>all requested profiles are unsupported</error>\r\n",
+    "<error code='421' xml:lang='en-US'>service not available</error>",
+    "<?xml version='1.0' encoding='utf-8' standalone='yes'?>\r\n<greeting />",
+    "<?xml version=\"1.0\"?><ok/>",
+
+    /* entities, white spaces and empty nodes */
+    "<error code='550'>a &lt; b &amp;&amp; c &gt; d</error>",
+    "<profile uri='a&amp;b' note=\"it's\" />",
+    "<error code='550'>  trailing spaces   \r\n</error>",
+    "<error>\r\n\r\n</error>",
+    "<x></x>",
+    "<x>   </x>",
+    "<x><![CDATA[]]></x>",
+    "<x><![CDATA[  keep \r\n spaces ]]></x>",
+    "<x>\ttab</x>",
+    "<x\r\na='b'/>",
+    "<x a = 'b' />",
+    "<x a='b'c='d'/>",
+    "<a><b><c d='e'>text</c></b><b /></a>",
+    "<a> <b/> <c/> </a>",
+    "<a>text<b/></a>",
+    "<a><b/>text</a>",
+    "<a><b/></a> trailing <c/>",
+    "   \r\n<a/>",
+    "<error code='550'>\u00e1\u00e9\u00ed \u20ac</error>",
+
+    /* broken documents */
+    "<a><b></a>",
+    "<a>",
+    "<a b='c'",
+    "<a b='c",
+    "<a b=c/>",
+    "text",
+    "",
+    "<![CDATA[x]]>",
+    "<a>\0</a>"
+];
+
+/* load the engine (only the parser is used) */
+function loadEngine () {
+    var sandbox = {
+	Vortex       : { log : function () {}, log2 : function () {}, error : function () {}, warn : function () {} },
+	VortexEngine : { trim : function (string) { return string.replace (/^\s+|\s+$/g, ''); } }
+    };
+    vm.createContext (sandbox);
+    vm.runInContext (fs.readFileSync (path.join (__dirname, "..", "src", "VortexXMLEngine.js"), "utf8"), sandbox);
+    return sandbox.VortexXMLEngine;
+}
+
+/* compact forms produced by Channel0Parser */
+function compactForms (classes) {
+    var input = documents.map (function (document) {
+	return Buffer.from (document, "utf8").toString ("base64");
+    }).join ("\n") + "\n";
+    var result = childProcess.spawnSync ("java", ["-cp", classes, "Channel0Check"], { input : input, encoding : "ascii" });
+    if (result.status != 0)
+	throw new Error ("Channel0Check failed: " + result.stderr);
+    return result.stdout.split ("\n").slice (0, documents.length).map (function (line) {
+	return line == "-" ? null : Buffer.from (line, "base64").toString ("utf8");
+    });
+}
+
+/* comparable form of a node (links checked against the tree) */
+function describe (node, parent, previous, next) {
+    var keys   = Object.keys (node).sort ();
+    var result = {
+	keys       : keys.join (","),
+	name       : node.name,
+	attrs      : node.attrs,
+	content    : typeof node.content == "undefined" ? "(undefined)" : node.content,
+	haveChilds : typeof node.haveChilds == "undefined" ? "(undefined)" : node.haveChilds,
+	links      : (node.parentNode === parent) + "," + (node.previousNode === previous) + "," + (node.nextNode === next),
+	headers    : [node.version, node.encoding, node.standalone],
+	childs     : []
+    };
+    for (var iterator = 0; iterator < node.childs.length; iterator++) {
+	result.childs.push (describe (node.childs[iterator], node,
+				      iterator > 0 ? node.childs[iterator - 1] : null,
+				      iterator + 1 < node.childs.length ? node.childs[iterator + 1] : null));
+    }
+    return result;
+}
+
+function parseString (engine, document) {
+    try {
+	var node = engine.parseFromString (document);
+	return node ? JSON.stringify (describe (node, null, null, null)) : "null";
+    } catch (ex) {
+	return "throws";
+    }
+}
+
+var classes  = process.argv[2] || [path.join (__dirname, "..", "socket-connector"),
+				   path.join (__dirname, "..", "socket-connector", "tools")].join (path.delimiter);
+var engine   = loadEngine ();
+var compacts = compactForms (classes);
+var failures = 0;
+var compared = 0;
+
+documents.forEach (function (document, index) {
+    var expected = parseString (engine, document);
+    var compact  = compacts[index];
+    var found;
+
+    if (compact == null) {
+	/* left to parseFromString: only when it fails there or
+	 * the document can't be represented */
+	if (expected == "null" || expected == "throws" || document.indexOf ("\0") != -1)
+	    return;
+	found = "(no compact form)";
+    } else {
+	var node = engine.parseFromCompact (compact);
+	found    = node ? JSON.stringify (describe (node, null, null, null)) : "null";
+	compared++;
+    }
+
+    if (found != expected) {
+	failures++;
+	console.log ("FAILED: " + JSON.stringify (document));
+	console.log ("  parseFromString:  " + expected);
+	console.log ("  parseFromCompact: " + found);
+    }
+});
+
+console.log ("testChannel0Compact: " + documents.length + " documents, " + compared + " compared, " + failures + " failures");
+process.exit (failures > 0 ? 1 : 0);